@@ -0,0 +1,184 @@
+package byow.Core;
+
+import byow.TileEngine.Palette;
+import byow.TileEngine.TileGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the tiles of a chunked World (see World.chunked) one strip of STRIP_WIDTH
+ * columns at a time, when its TileGrid first reads the strip, so only the strips near
+ * the players are ever generated. The tiles are the ones World.generate makes for the
+ * same seed.
+ *
+ * Rooms are placed up front as usual; they are only a list. A strip is then built in a
+ * scratch world of the same size, like one strip of ParallelGenerator:
+ *  - the whole hallway walk is stamped, writing only the strip and the two columns right
+ *    of it, which the unblock passes over the strip read,
+ *  - walls are unblocked, the rooms crossing the strip are carved, and walls are
+ *    unblocked again.
+ * Unblocking reads the already unblocked column left of the strip. The last column of
+ * every built strip is kept after each pass, so a strip only has to build its left
+ * neighbour first when its first column has a wall with floor to its right, the one
+ * case in which that column can change (see ParallelGenerator.leftNeighbourMatters).
+ */
+class ChunkedGenerator implements TileGrid.StripSource {
+    static final int STRIP_WIDTH = 2 * TileGrid.PAGE_SIZE;
+
+    private final World scratch;
+    private final int width;
+    private final int height;
+    /* Hallways stamped so far, as [minX, maxX, minY, maxY] with their walls. */
+    private final List<int[]> hallways;
+    /* Last column of each built strip after the first and second unblock pass. */
+    private final byte[][] afterHallways;
+    private final byte[][] afterRooms;
+
+    /** Makes WORLD, whose rooms are placed, generate its tiles strip by strip. */
+    static void start(World world) {
+        ChunkedGenerator generator = new ChunkedGenerator(world);
+        world.chunks = generator;
+        world.tiles.generateLazily(generator, STRIP_WIDTH);
+    }
+
+    private ChunkedGenerator(World world) {
+        this.width = world.worldWidth + 1;
+        this.height = world.worldHeight + 1;
+        this.scratch = new World(width, height);
+        scratch.worldSeed = world.worldSeed;
+        scratch.rooms.addAll(world.rooms);
+        scratch.fireDoor = world.fireDoor;
+        scratch.waterDoor = world.waterDoor;
+        scratch.armor = world.armor;
+        this.hallways = new ArrayList<>();
+        World.Room currRoom = null;
+        for (World.Room nextRoom : world.rooms) {
+            if (currRoom != null) {
+                addHallway(currRoom.center, nextRoom.center);
+            }
+            currRoom = nextRoom;
+        }
+        int strips = (width + STRIP_WIDTH - 1) / STRIP_WIDTH;
+        this.afterHallways = new byte[strips][];
+        this.afterRooms = new byte[strips][];
+    }
+
+    /* Records the tiles World.addHallway can write for a hallway from START to END. */
+    private void addHallway(World.Coordinate start, World.Coordinate end) {
+        hallways.add(new int[]{Math.min(start.x, end.x) - 1, Math.max(start.x, end.x) + 1,
+            end.y - 1, end.y + 1});
+        hallways.add(new int[]{start.x - 1, start.x + 1, Math.min(start.y, end.y) - 1,
+            Math.max(start.y, end.y) + 1});
+    }
+
+    /**
+     * Whether (x, y) can be floor once generated: only rooms and hallways, with their
+     * walls, hold anything but nothing. Lets spawnPlayer skip empty tiles without
+     * building their strip.
+     */
+    boolean mayBeFloor(int x, int y) {
+        for (World.Room room : scratch.rooms) {
+            if (x >= room.bottomLeft.x && x <= room.topRight.x
+                    && y >= room.bottomLeft.y && y <= room.topRight.y) {
+                return true;
+            }
+        }
+        for (int[] hallway : hallways) {
+            if (x >= hallway[0] && x <= hallway[1] && y >= hallway[2] && y <= hallway[3]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the strip of columns [FROMX, TOX) and returns the scratch grid holding it,
+     * building the strips to its left first where it needs them.
+     */
+    @Override
+    public synchronized TileGrid strip(int fromX, int toX) {
+        int target = fromX / STRIP_WIDTH;
+        int strip = target;
+        while (true) {
+            if (!build(strip)) {
+                strip -= 1;
+            } else if (strip == target) {
+                return scratch.tiles;
+            } else {
+                strip += 1;
+            }
+        }
+    }
+
+    /*
+     * Builds STRIP in the scratch world. Returns false, having built nothing, if it needs
+     * the last columns of the strip to its left and that strip was never built.
+     */
+    private boolean build(int strip) {
+        int from = strip * STRIP_WIDTH;
+        int to = Math.min(from + STRIP_WIDTH, width);
+        int unblockFrom = Math.max(from, 1);
+        scratch.initWorld(width, height);
+        scratch.stampHallways(from, Math.min(to + 2, width));
+        if (dependsOnLeft(from)) {
+            if (afterHallways[strip - 1] == null) {
+                return false;
+            }
+            setColumn(from - 1, afterHallways[strip - 1]);
+        }
+        scratch.unblockColumns(unblockFrom, Math.min(to + 1, scratch.worldWidth),
+                scratch.tiles, scratch.tiles);
+        byte[] hallwayEdge = column(to - 1);
+        Random rand = new Random(scratch.worldSeed);
+        for (World.Room room : scratch.rooms) {
+            int floorType = rand.nextInt(3);
+            if (room.bottomLeft.x <= to && room.topRight.x >= from) {
+                scratch.addRoom(room, floorType);
+            }
+        }
+        if (dependsOnLeft(from)) {
+            if (afterRooms[strip - 1] == null) {
+                return false;
+            }
+            setColumn(from - 1, afterRooms[strip - 1]);
+        }
+        scratch.unblockColumns(unblockFrom, Math.min(to, scratch.worldWidth),
+                scratch.tiles, scratch.tiles);
+        afterHallways[strip] = hallwayEdge;
+        afterRooms[strip] = column(to - 1);
+        return true;
+    }
+
+    /*
+     * Whether unblocking column X, the first of a strip, reads the column to its left: a
+     * wall there only opens sideways if the tile to its right is floor.
+     */
+    private boolean dependsOnLeft(int x) {
+        if (x == 0 || x >= scratch.worldWidth) {
+            return false;
+        }
+        for (int y = 1; y < scratch.worldHeight; y++) {
+            if (scratch.tiles.get(x, y) == Palette.WALL
+                    && scratch.tiles.get(x + 1, y) == Palette.FLOOR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] column(int x) {
+        byte[] column = new byte[height];
+        for (int y = 0; y < height; y++) {
+            column[y] = scratch.tiles.get(x, y);
+        }
+        return column;
+    }
+
+    private void setColumn(int x, byte[] column) {
+        for (int y = 0; y < height; y++) {
+            scratch.tiles.set(x, y, column[y]);
+        }
+    }
+}
@@ -2,20 +2,29 @@ package byow.Core;
 
 import byow.InputDemo.InputSource;
 import byow.InputDemo.KeyboardInputSource;
-import byow.InputDemo.StringInputDevice;
+import byow.TileEngine.AnsiRenderer;
+import byow.TileEngine.Camera;
 import byow.TileEngine.TERenderer;
+import byow.TileEngine.Palette;
 import byow.TileEngine.TETile;
-import byow.TileEngine.Tileset;
 import edu.princeton.cs.introcs.StdDraw;
 import java.awt.Color;
 import java.awt.Font;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
 
 import static byow.Core.PersistenceUtils.*;
 import static java.lang.Math.max;
 
 public class Engine {
     TERenderer ter = new TERenderer();
+    Camera camera;
+    Hud hud;
+    /* Draws the keyboard game on its own thread once the game has started. */
+    RenderLoop renderLoop;
     World world;
     boolean gameOver;
 
@@ -24,9 +33,31 @@ public class Engine {
     public static final File CWD = join(join(new File(System.getProperty("user.dir")),
             "byow"), "Core");
     public static final File SAVE_LOCATION = join(CWD, "world.txt");
+    /* Written every SaveService.AUTOSAVE_SECONDS; loaded instead of world.txt if newer. */
+    public static final File AUTOSAVE_LOCATION = join(CWD, "autosave.txt");
+    public static final File JOURNAL_LOCATION = join(CWD, "journal.bin");
+    public static final char UNDO_KEY = 'U';
+    static final SaveService SAVES = new SaveService(SAVE_LOCATION);
+    static final SaveService AUTOSAVES = new SaveService(AUTOSAVE_LOCATION);
 
     public Engine() {
-        world = new World(WIDTH, HEIGHT);
+        this(WIDTH, HEIGHT);
+    }
+
+    /**
+     * Engine for a WIDTH x HEIGHT world. Worlds larger than the WIDTH x HEIGHT window
+     * are shown through a camera that follows the players.
+     */
+    public Engine(int width, int height) {
+        this(width, height, false);
+    }
+
+    /**
+     * Engine for a WIDTH x HEIGHT world that, if CHUNKED, is only built near the players
+     * (see World). Chunked and flat worlds play and save the same.
+     */
+    public Engine(int width, int height, boolean chunked) {
+        world = new World(width, height, chunked);
         gameOver = false;
     }
 
@@ -56,12 +87,14 @@ public class Engine {
                     startNew = true;
                     mainMenu = false;
                 } else if (input == 'L') {
-                    GameState saveState = readObject(SAVE_LOCATION, GameState.class);
-                    String interactString = "N" + saveState.seed.toString() + "S"
-                            + saveState.keystrokeHistory;
-                    interactWithInputString(interactString);
                     if (inputSourceType.equals("keyboard")) {
-                        ter.initialize(world.worldWidth + 1, world.worldHeight + 6);
+                        loadGame(recoverGame());
+                        startRecording();
+                    } else {
+                        loadGame(readSave());
+                    }
+                    if (inputSourceType.equals("keyboard")) {
+                        startView();
                         render();
                     }
                     mainMenu = false;
@@ -86,10 +119,11 @@ public class Engine {
                 }
                 if (input == 'S') {
                     if (inputSourceType.equals("keyboard")) {
-                        ter.initialize(world.worldWidth + 1, world.worldHeight + 6);
+                        startView();
                     }
-                    world.generate(Long.parseLong(strSeed.toString()));
+                    WorldCache.shared().generate(world, Long.parseLong(strSeed.toString()));
                     if (inputSourceType.equals("keyboard")) {
+                        startRecording();
                         render();
                     }
                     startNew = false;
@@ -97,36 +131,40 @@ public class Engine {
                 }
             }
             if (gameStarted) {
+                // Resolve the encounter first, so a loss ends the game before reading a key.
+                world.settle();
                 String gameOverResult = checkGameOver();
                 if (gameOverResult != null) {
                     if (inputSourceType.equals("keyboard")) {
+                        stopRendering();
                         gameOverScreen(gameOverResult);
                     } else if (inputSourceType.equals("string")) {
                         break;
                     }
                 }
-                if (world.inEncounter) {
-                    world.checkEncounter();
-                    if (inputSourceType.equals("keyboard")) {
-                        render();
-                    }
-                }
                 if (inputSourceType.equals("keyboard")) {
-                    showUI();
-                    if (StdDraw.hasNextKeyTyped()) {
-                        char input = inputSource.getNextKey();
-                        if (!aboutToQuit) {
-                            if (input == ':') {
-                                aboutToQuit = true;
-                            }
-                        } else {
-                            if (input == 'Q') {
-                                quitWorld(world, true);
-                            }
+                    if (AUTOSAVES.autosaveDue(world.keystrokeHistory.length())) {
+                        AUTOSAVES.save(saveState(world));
+                    }
+                    if (renderLoop == null) {
+                        renderLoop = new RenderLoop(this);
+                        renderLoop.start();
+                    }
+                    renderLoop.publish(new FrameState(world));
+                    char input = inputSource.getNextKey();
+                    if (!aboutToQuit) {
+                        if (input == ':') {
+                            aboutToQuit = true;
                         }
-                        handleMovement(input);
-                        render();
+                    } else {
+                        if (input == 'Q') {
+                            quitWorld(world, true);
+                        }
+                    }
+                    if (input == UNDO_KEY) {
+                        undo();
                     }
+                    world.step(input);
                 } else if (inputSourceType.equals("string")) {
                     try {
                         char input = inputSource.getNextKey();
@@ -139,7 +177,7 @@ public class Engine {
                                 quitWorld(world, false);
                             }
                         }
-                        handleMovement(input);
+                        world.step(input);
                     } catch (StringIndexOutOfBoundsException e) {
                         break;
                     }
@@ -149,13 +187,73 @@ public class Engine {
     }
 
     public TETile[][] interactWithInputString(String input) {
-        System.out.println(input.toUpperCase());
-        InputSource stringInput = new StringInputDevice(input.toUpperCase());
-        interact(stringInput, "string");
-        return world.tiles;
+        new ReplayEngine(this).replay(input.toUpperCase());
+        return world.tiles.toTETiles();
+    }
+
+    /**
+     * Like interactWithInputString, but streams the input from FILE so that very long
+     * inputs never have to be held in memory.
+     */
+    public TETile[][] interactWithInputFile(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            new ReplayEngine(this).replay(channel);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return world.tiles.toTETiles();
     }
 
 
+    /**
+     * Plays in a terminal, e.g. over SSH: keys are read from IN and the world is drawn to
+     * OUT with ANSI escape sequences. The terminal should be in raw mode (stty raw -echo)
+     * so that keys arrive without waiting for Enter. Input follows the same rules as
+     * interactWithInputString.
+     */
+    public void interactWithTerminal(InputStream in, PrintStream out) {
+        AnsiRenderer renderer = new AnsiRenderer(out);
+        ReplayEngine replay = new ReplayEngine(this);
+        out.print("Fireguy and Waterlady - New Game (N), Load Game (L), Quit (Q)\r\n");
+        out.flush();
+        try {
+            int key;
+            while (!replay.isDone() && !replay.hasQuit() && (key = in.read()) >= 0) {
+                boolean wasInGame = replay.inGame();
+                replay.feed(Character.toUpperCase((char) key));
+                if (!replay.inGame()) {
+                    continue;
+                }
+                if (!wasInGame) {
+                    renderer.initialize(world.worldWidth + 1, world.worldHeight + 1);
+                }
+                renderer.renderFrame(world.tiles);
+                renderer.moveBelow(0);
+                out.print("Steps till Trails: " + max(world.getTrailStepsLimit()
+                        - world.totalStepsTaken, 0));
+                if (world.armorStepsLeft > 0) {
+                    out.print("   Armor durability: " + world.armorStepsLeft);
+                }
+                if (world.inEncounter) {
+                    out.print("   Steps Remaining: " + world.encounterStepsLeft
+                            + "   Gems Collected: " + world.gemsCollected);
+                }
+                out.flush();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            renderer.close();
+        }
+        String result = checkGameOver();
+        if (result != null) {
+            renderer.moveBelow(1);
+            out.print(result.equals("win") ? "GAME OVER - YOU WIN!" : "GAME OVER - YOU LOSE! :(");
+            out.print("\r\n");
+            out.flush();
+        }
+    }
+
     public void showMainMenu() {
         StdDraw.clear(Color.BLACK);
         StdDraw.setFont(new Font("Monaco", Font.BOLD, 50));
@@ -211,31 +309,22 @@ public class Engine {
     }
 
     public void showUI() {
-        if ((int) StdDraw.mouseX() < WIDTH && (int) StdDraw.mouseY() < HEIGHT) {
-            TETile currTile = world.tiles[(int) StdDraw.mouseX()][(int) StdDraw.mouseY()];
-            StdDraw.setPenColor(Color.BLACK);
-            StdDraw.filledRectangle(WIDTH - 3, HEIGHT + 3, 4, 3);
-            StdDraw.setPenColor(Color.WHITE);
-            StdDraw.textRight(WIDTH - 1, HEIGHT + 3, currTile.description());
+        showUI(new FrameState(world));
+    }
 
+    /**
+     * Brings the HUD above the map up to date with FRAME. Only the values that changed
+     * since the last call are redrawn; see Hud.
+     */
+    void showUI(FrameState frame) {
+        TETile currTile = null;
+        if ((int) StdDraw.mouseX() < camera.width() && (int) StdDraw.mouseY() < camera.height()) {
+            currTile = frame.tiles.tile(camera.worldX((int) StdDraw.mouseX()),
+                    camera.worldY((int) StdDraw.mouseY()));
         }
-        if (world.inEncounter) {
-            StdDraw.setPenColor(Color.BLACK);
-            StdDraw.filledRectangle(3, HEIGHT + 3, 6, 2);
-            StdDraw.setPenColor(Color.WHITE);
-            StdDraw.text(WIDTH / 2, HEIGHT + 4, "Steps Remaining: " + world.encounterStepsLeft);
-            StdDraw.text(WIDTH / 2, HEIGHT + 2, "Gems Collected: " + world.gemsCollected);
-        }
-        StdDraw.setPenColor(Color.BLACK);
-        StdDraw.filledRectangle(3, HEIGHT + 3, 6, 2);
-        if (world.armorStepsLeft > 0) {
-            StdDraw.setPenColor(Color.WHITE);
-            StdDraw.textLeft(1, HEIGHT + 2, "Armor durability: " + world.armorStepsLeft);
+        if (hud.update(frame, currTile)) {
+            StdDraw.show();
         }
-        StdDraw.setPenColor(Color.WHITE);
-        StdDraw.textLeft(1, HEIGHT + 4, "Steps till Trails: " + max((
-                world.getTrailStepsLimit() - world.totalStepsTaken), 0));
-        StdDraw.show();
     }
 
 
@@ -243,49 +332,183 @@ public class Engine {
     public void quitWorld(World inWorld, boolean sysExit) {
         System.out.println(CWD.toString());
         System.out.println(SAVE_LOCATION.toString());
-        writeObject(SAVE_LOCATION, new GameState(inWorld.worldSeed,
-                world.currPosP1,
-                world.currPosP2,
-                world.keystrokeHistory.toString()));
+        SAVES.save(saveState(inWorld));
+        if (world.journal != null) {
+            // Only mark the session closed once the save that holds it is on disk.
+            SAVES.flush();
+            world.journal.close();
+            world.journal = null;
+        }
         if (sysExit) {
+            SAVES.flush();
             System.exit(0);
         }
     }
 
+    /**
+     * Returns an immutable snapshot of INWORLD to save. A chunked world is saved without
+     * its checkpoint, which would have to build every strip to be written; loading it
+     * replays the history instead.
+     */
+    GameState saveState(World inWorld) {
+        return new GameState(inWorld.worldSeed, World.Coordinate.unpack(inWorld.currPosP1),
+                World.Coordinate.unpack(inWorld.currPosP2),
+                inWorld.keystrokeHistory.toString(),
+                inWorld.chunked ? null : inWorld.latestCheckpoint);
+    }
+
+    /**
+     * Reads the save, once any save still being written in the background is done. The
+     * autosave is read instead of world.txt if it was written later, i.e. the last
+     * session autosaved and then ended without ":Q".
+     */
+    GameState readSave() {
+        SAVES.flush();
+        AUTOSAVES.flush();
+        return SaveFormat.read(saveLocation());
+    }
+
+    /**
+     * The file readSave reads: whichever of world.txt and the autosave was modified last,
+     * world.txt on a tie. world.txt ships with the repo, so being there says nothing.
+     */
+    private static File saveLocation() {
+        if (!AUTOSAVE_LOCATION.isFile()) {
+            return SAVE_LOCATION;
+        }
+        if (!SAVE_LOCATION.isFile()
+                || AUTOSAVE_LOCATION.lastModified() > SAVE_LOCATION.lastModified()) {
+            return AUTOSAVE_LOCATION;
+        }
+        return SAVE_LOCATION;
+    }
+
+    /**
+     * Rebuilds the saved game in SAVESTATE. Saves with a checkpoint restore it and only
+     * replay the moves made after it; older saves replay the whole history.
+     */
+    public void loadGame(GameState saveState) {
+        if (saveState.checkpoint == null) {
+            interactWithInputString("N" + saveState.seed.toString() + "S"
+                    + saveState.keystrokeHistory);
+            return;
+        }
+        world.worldSeed = saveState.seed;
+        saveState.checkpoint.restore(world, saveState.keystrokeHistory);
+        replayMoves(saveState.keystrokeHistory.substring(saveState.checkpoint.step()));
+    }
+
+    /**
+     * Returns the game to load in keyboard mode: the session the journal recorded if it
+     * crashed before ":Q", otherwise the save.
+     */
+    private GameState recoverGame() {
+        GameState journaled = KeystrokeJournal.recover(JOURNAL_LOCATION);
+        if (journaled == null) {
+            return readSave();
+        }
+        return recoverGame(journaled, saveLocation().isFile() ? readSave() : null);
+    }
+
+    /**
+     * Picks between JOURNALED, a session that crashed, and SAVED, the save or null. The
+     * crashed session was played after the save was written, so it wins whatever its
+     * seed; it only borrows the save's checkpoint if it continues the saved game.
+     */
+    static GameState recoverGame(GameState journaled, GameState saved) {
+        if (saved != null && journaled.seed.equals(saved.seed)
+                && journaled.keystrokeHistory.startsWith(saved.keystrokeHistory)) {
+            return new GameState(saved.seed, null, null, journaled.keystrokeHistory,
+                    saved.checkpoint);
+        }
+        return journaled;
+    }
+
+    /**
+     * Journals the rest of this keyboard session, starting from the current history, and
+     * starts the timeline used by the undo key.
+     */
+    private void startRecording() {
+        world.journal = KeystrokeJournal.open(JOURNAL_LOCATION, world.worldSeed,
+                world.keystrokeHistory);
+        world.timeline = new Timeline(world);
+    }
+
+    /** Takes back the last move. The journal records the undo on its own thread. */
+    private void undo() {
+        Timeline timeline = world.timeline;
+        if (timeline == null || timeline.lastStep() == timeline.firstStep()) {
+            return;
+        }
+        timeline.rewind(world, timeline.lastStep() - 1);
+        world.journal.undoTo(world.keystrokeHistory.length());
+    }
+
+    /** Applies MOVES exactly as the in-game branch of interact does for string input. */
+    private void replayMoves(String moves) {
+        world.step(moves);
+    }
+
     public void handleMovement(char input) {
         // Fire guy movement
         if (input == 'W') {
             //move up
-            world.move(Tileset.FIRE_GUY, world.currPosP1, input);
+            world.move(Palette.FIRE_GUY, world.currPosP1, input);
         } else if (input == 'A') {
             //move left
-            world.move(Tileset.FIRE_GUY, world.currPosP1, input);
+            world.move(Palette.FIRE_GUY, world.currPosP1, input);
         } else if (input == 'S') {
             //move down
-            world.move(Tileset.FIRE_GUY, world.currPosP1, input);
+            world.move(Palette.FIRE_GUY, world.currPosP1, input);
         } else if (input == 'D') {
             //move right
-            world.move(Tileset.FIRE_GUY, world.currPosP1, input);
+            world.move(Palette.FIRE_GUY, world.currPosP1, input);
         }
 
         // Water lady movement
         if (input == 'I') {
             //move up
-            world.move(Tileset.WATER_LADY, world.currPosP2, input);
+            world.move(Palette.WATER_LADY, world.currPosP2, input);
         } else if (input == 'J') {
             //move left
-            world.move(Tileset.WATER_LADY, world.currPosP2, input);
+            world.move(Palette.WATER_LADY, world.currPosP2, input);
         } else if (input == 'K') {
             //move down
-            world.move(Tileset.WATER_LADY, world.currPosP2, input);
+            world.move(Palette.WATER_LADY, world.currPosP2, input);
         } else if (input == 'L') {
             //move right
-            world.move(Tileset.WATER_LADY, world.currPosP2, input);
+            world.move(Palette.WATER_LADY, world.currPosP2, input);
         }
     }
 
+    /** Sizes the window to the camera, which sees at most WIDTH x HEIGHT tiles. */
+    public void startView() {
+        camera = new Camera(Math.min(world.worldWidth + 1, WIDTH),
+                Math.min(world.worldHeight + 1, HEIGHT));
+        ter.initialize(camera.width(), camera.height() + 5);
+        hud = new Hud(camera.width(), camera.height());
+    }
+
+    /** Draws the part of the world around World.focus. */
     public void render() {
-        ter.renderFrame(world.tiles);
+        render(new FrameState(world));
+    }
+
+    /** Like render(), but draws FRAME, which may be older than the world. */
+    void render(FrameState frame) {
+        camera.follow(World.Coordinate.packedX(frame.focus),
+                World.Coordinate.packedY(frame.focus), frame.worldWidth, frame.worldHeight);
+        if (ter.renderFrame(frame.tiles, camera)) {
+            hud.invalidate();
+        }
+    }
+
+    /** Stops the render thread, if any, so this thread can draw with StdDraw again. */
+    void stopRendering() {
+        if (renderLoop != null) {
+            renderLoop.stop();
+            renderLoop = null;
+        }
     }
 
     public void initStdDraw() {
@@ -300,7 +523,7 @@ public class Engine {
     }
 
     public String checkGameOver() {
-        if (world.currPosP1.equals(world.fireDoor) && world.currPosP2.equals(world.waterDoor)) {
+        if (world.won()) {
             gameOver = true;
             return "win";
         }
@@ -0,0 +1,48 @@
+package byow.Core;
+
+/**
+ * Caps how often the RenderLoop redraws. Between frames the loop parks for
+ * nanosUntilFrame() instead of spinning, so an idle game sleeps, while a move that
+ * arrives is shown at the next frame at the latest.
+ *
+ * The cap comes from the byow.fps property (default 60).
+ */
+public class FramePacer {
+    static final int DEFAULT_FPS = 60;
+
+    private final long frameNanos;
+    private long nextFrame;
+
+    public FramePacer(int fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("fps must be positive");
+        }
+        this.frameNanos = 1_000_000_000L / fps;
+        this.nextFrame = System.nanoTime();
+    }
+
+    /** A pacer capped at the frame rate given by the byow.fps property. */
+    public static FramePacer fromProperty() {
+        return new FramePacer(Integer.getInteger("byow.fps", DEFAULT_FPS));
+    }
+
+    /** Nanoseconds left until the next frame is due, or 0 if it already is. */
+    public long nanosUntilFrame() {
+        return Math.max(0, nextFrame - System.nanoTime());
+    }
+
+    /** Whether the next frame is due. */
+    public boolean frameDue() {
+        return nanosUntilFrame() == 0;
+    }
+
+    /** Starts the wait for the frame after this one. */
+    public void frameShown() {
+        long now = System.nanoTime();
+        nextFrame += frameNanos;
+        if (nextFrame <= now) {
+            // Fell behind, e.g. after a long save or a pause: don't try to catch up.
+            nextFrame = now + frameNanos;
+        }
+    }
+}
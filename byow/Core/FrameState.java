@@ -0,0 +1,33 @@
+package byow.Core;
+
+import byow.TileEngine.TileGrid;
+
+/**
+ * Immutable copy of everything drawn for one frame of a World: a copy-on-write snapshot
+ * of its tiles, the position the camera follows and the numbers shown in the
+ * HUD. The simulation thread builds one after every change and hands it to the
+ * RenderLoop, which can draw it while the world moves on.
+ */
+public class FrameState {
+    final TileGrid tiles;
+    /* Packed, see World.focus. */
+    final int focus;
+    final int worldWidth, worldHeight;
+    final int trailStepsLeft;
+    final int armorStepsLeft;
+    final boolean inEncounter;
+    final int encounterStepsLeft;
+    final int gemsCollected;
+
+    FrameState(World world) {
+        this.tiles = world.tiles.snapshot();
+        this.focus = world.focus();
+        this.worldWidth = world.worldWidth + 1;
+        this.worldHeight = world.worldHeight + 1;
+        this.trailStepsLeft = Math.max(world.getTrailStepsLimit() - world.totalStepsTaken, 0);
+        this.armorStepsLeft = world.armorStepsLeft;
+        this.inEncounter = world.inEncounter;
+        this.encounterStepsLeft = world.encounterStepsLeft;
+        this.gemsCollected = world.gemsCollected;
+    }
+}
@@ -0,0 +1,52 @@
+package byow.Core;
+
+import java.util.EnumSet;
+
+/**
+ * Things that can happen during World.step. A step returns them as an int with one bit
+ * per event (see bit), so stepping allocates nothing; of turns such an int into an
+ * EnumSet when convenience matters more.
+ *
+ * Ex:
+ *      int events = world.step('D');
+ *      if (GameEvent.WON.in(events)) { ... }
+ */
+public enum GameEvent {
+    /** A player moved to the next tile. */
+    MOVED,
+    /** A player tried to move into a wall, the void or the other player. */
+    BLOCKED,
+    /** A player walked into the other's element and the encounter room was entered. */
+    ENCOUNTER_STARTED,
+    /** Every gem of the encounter was collected, so both players are back in the world. */
+    ENCOUNTER_CLEARED,
+    /** A gem was collected during an encounter. */
+    GEM_COLLECTED,
+    /** Armor was picked up. */
+    ARMOR_PICKED,
+    /** Both players stand on their doors. */
+    WON,
+    /** The encounter ran out of steps. */
+    LOST;
+
+    /** The bit of this event in the ints returned by World.step. */
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /** Whether EVENTS, as returned by World.step, includes this event. */
+    public boolean in(int events) {
+        return (events & bit()) != 0;
+    }
+
+    /** Returns the events in EVENTS, as returned by World.step. */
+    public static EnumSet<GameEvent> of(int events) {
+        EnumSet<GameEvent> set = EnumSet.noneOf(GameEvent.class);
+        for (GameEvent event : values()) {
+            if (event.in(events)) {
+                set.add(event);
+            }
+        }
+        return set;
+    }
+}
@@ -3,15 +3,25 @@ package byow.Core;
 import java.io.Serializable;
 
 public class GameState implements Serializable {
+    /* Pinned to the value of the original class so older saves still load. */
+    private static final long serialVersionUID = 4448190268023863610L;
     Long seed;
     World.Coordinate currPosP1, currPosP2;
     String keystrokeHistory;
+    /* Latest checkpoint of the world, or null for saves made without one. */
+    WorldCheckpoint checkpoint;
 
     public GameState(Long seed, World.Coordinate currPosP1,
                      World.Coordinate currPosP2, String keystrokeHistory) {
+        this(seed, currPosP1, currPosP2, keystrokeHistory, null);
+    }
+
+    public GameState(Long seed, World.Coordinate currPosP1, World.Coordinate currPosP2,
+                     String keystrokeHistory, WorldCheckpoint checkpoint) {
         this.seed = seed;
         this.currPosP1 = currPosP1;
         this.currPosP2 = currPosP2;
         this.keystrokeHistory = keystrokeHistory;
+        this.checkpoint = checkpoint;
     }
 }
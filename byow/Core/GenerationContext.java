@@ -0,0 +1,95 @@
+package byow.Core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * State shared by the stages of one GenerationPipeline run: the world being built, the
+ * seed and generation mode, and the timing of every stage that has run so far.
+ */
+public class GenerationContext {
+    private final World world;
+    private final long seed;
+    private final boolean parallel;
+    private final List<StageTiming> timings = new ArrayList<>();
+
+    /** Wall-clock time and bytes allocated by the calling thread for one stage. */
+    public static class StageTiming {
+        final String stage;
+        final long nanos;
+        final long allocatedBytes;
+
+        StageTiming(String stage, long nanos, long allocatedBytes) {
+            this.stage = stage;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String stage() {
+            return stage;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        /**
+         * Bytes allocated on the calling thread, or -1 if the JVM cannot measure it or
+         * the run was parallel, where the pool's workers would not be counted.
+         */
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %9.3f ms %12d B", stage, nanos / 1e6, allocatedBytes);
+        }
+    }
+
+    GenerationContext(World world, long seed, boolean parallel) {
+        this.world = world;
+        this.seed = seed;
+        this.parallel = parallel;
+    }
+
+    public World world() {
+        return world;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    /** Whether stages should split their work across a ForkJoinPool. */
+    public boolean parallel() {
+        return parallel;
+    }
+
+    public List<StageTiming> timings() {
+        return Collections.unmodifiableList(timings);
+    }
+
+    public long totalNanos() {
+        long total = 0;
+        for (StageTiming timing : timings) {
+            total += timing.nanos;
+        }
+        return total;
+    }
+
+    void record(String stage, long nanos, long allocatedBytes) {
+        timings.add(new StageTiming(stage, nanos, allocatedBytes));
+    }
+
+    /** One line per stage, followed by the total. */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (StageTiming timing : timings) {
+            sb.append(timing).append('\n');
+        }
+        sb.append(String.format("%-10s %9.3f ms%n", "total", totalNanos() / 1e6));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package byow.Core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An ordered list of GenerationStages. standard() is the sequence World.generate has
+ * always run: place rooms, stamp hallways, carve rooms, spawn both players. A chunked
+ * World only places its rooms; the hallways stage hands the rest to a ChunkedGenerator,
+ * which carves each strip as it builds it. Pipelines are immutable; without, replace,
+ * upTo and then return modified copies.
+ *
+ * Ex: screen seeds on room layout alone
+ *      GenerationPipeline.standard().upTo(GenerationPipeline.ROOMS).run(world, seed, false);
+ */
+public class GenerationPipeline {
+    public static final String ROOMS = "rooms";
+    public static final String HALLWAYS = "hallways";
+    public static final String CARVE = "carve";
+    public static final String SPAWN = "spawn";
+
+    private static final GenerationPipeline STANDARD = new GenerationPipeline(List.of(
+            stage(ROOMS, c -> c.world().createRoomObjects(c.seed())),
+            stage(HALLWAYS, c -> {
+                if (c.world().chunked) {
+                    ChunkedGenerator.start(c.world());
+                } else if (c.parallel()) {
+                    ParallelGenerator.addHallways(c.world());
+                } else {
+                    c.world().addHallways();
+                }
+            }),
+            stage(CARVE, c -> {
+                if (c.world().chunks != null) {
+                    return;
+                }
+                if (c.parallel()) {
+                    ParallelGenerator.addRooms(c.world());
+                } else {
+                    c.world().addRooms();
+                }
+            }),
+            stage(SPAWN, c -> {
+                c.world().spawnPlayer("P1");
+                c.world().spawnPlayer("P2");
+                c.world().loadChunks();
+            })));
+
+    private final List<GenerationStage> stages;
+
+    private GenerationPipeline(List<GenerationStage> stages) {
+        this.stages = Collections.unmodifiableList(stages);
+    }
+
+    public static GenerationPipeline standard() {
+        return STANDARD;
+    }
+
+    /** Wraps BODY as a stage called NAME. */
+    public static GenerationStage stage(String name, Consumer<GenerationContext> body) {
+        return new GenerationStage() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public void apply(GenerationContext context) {
+                body.accept(context);
+            }
+        };
+    }
+
+    public List<GenerationStage> stages() {
+        return stages;
+    }
+
+    /** Returns this pipeline without the stage called NAME. */
+    public GenerationPipeline without(String name) {
+        List<GenerationStage> result = new ArrayList<>(stages);
+        result.remove(indexOf(name));
+        return new GenerationPipeline(result);
+    }
+
+    /** Returns this pipeline with the stage called NAME swapped for REPLACEMENT. */
+    public GenerationPipeline replace(String name, GenerationStage replacement) {
+        List<GenerationStage> result = new ArrayList<>(stages);
+        result.set(indexOf(name), replacement);
+        return new GenerationPipeline(result);
+    }
+
+    /** Returns the stages of this pipeline up to and including the one called NAME. */
+    public GenerationPipeline upTo(String name) {
+        return new GenerationPipeline(new ArrayList<>(stages.subList(0, indexOf(name) + 1)));
+    }
+
+    /** Returns this pipeline with STAGE appended. */
+    public GenerationPipeline then(GenerationStage stage) {
+        List<GenerationStage> result = new ArrayList<>(stages);
+        result.add(stage);
+        return new GenerationPipeline(result);
+    }
+
+    /**
+     * Runs every stage on WORLD in order, timing each one. Allocation is only measured on
+     * the calling thread, so it is left out (-1) when PARALLEL, where stages hand most of
+     * their work to the pool's workers.
+     */
+    public GenerationContext run(World world, long seed, boolean parallel) {
+        GenerationContext context = new GenerationContext(world, seed, parallel);
+        for (GenerationStage stage : stages) {
+            long allocatedBefore = parallel ? -1 : allocatedBytes();
+            long start = System.nanoTime();
+            stage.apply(context);
+            long nanos = System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes();
+            long allocated = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+            context.record(stage.name(), nanos, allocated);
+        }
+        return context;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < stages.size(); i++) {
+            if (stages.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("no generation stage named " + name);
+    }
+
+    /* Bytes allocated so far by the calling thread, or -1 if the JVM cannot tell. */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()
+                    && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,12 @@
+package byow.Core;
+
+/**
+ * One step of world generation, run in order by a GenerationPipeline. Stages read and
+ * modify the World held by the GenerationContext.
+ */
+public interface GenerationStage {
+    /** Name used to skip or replace this stage and to label its timing. */
+    String name();
+
+    void apply(GenerationContext context);
+}
@@ -0,0 +1,130 @@
+package byow.Core;
+
+import byow.TileEngine.TETile;
+import edu.princeton.cs.introcs.StdDraw;
+
+import java.awt.Color;
+import java.awt.Font;
+
+/**
+ * The HUD in the rows above the map, kept on screen between frames. Each value shown
+ * (the tile under the mouse, steps till trails, armor durability, and the encounter's
+ * steps and gems) is a widget with its own box. A widget only clears its box and redraws
+ * its text when its value changes, so a frame where nothing changed draws nothing.
+ *
+ * The font and every box are fixed when the Hud is made for a view. Anything that
+ * clears the screen must call invalidate so the next update redraws every widget.
+ */
+public class Hud {
+    private static final Font FONT = new Font("Monaco", Font.BOLD, 14);
+    private static final int LEFT = 0, CENTER = 1, RIGHT = 2;
+
+    private final Widget mouseTile, trailSteps, armor, encounterSteps, gems;
+    private final Widget[] widgets;
+
+    /** A line of text anchored at (x, y) that owns the box around it. */
+    private static class Widget {
+        final String label;
+        final int align;
+        final double x, y;
+        final double centerX, centerY, halfWidth, halfHeight;
+        boolean drawn;
+        boolean visible;
+        int value;
+        String text;
+
+        Widget(String label, int align, double x, double y, double left, double right,
+               double bottom, double top) {
+            this.label = label;
+            this.align = align;
+            this.x = x;
+            this.y = y;
+            this.centerX = (left + right) / 2;
+            this.centerY = (bottom + top) / 2;
+            this.halfWidth = (right - left) / 2;
+            this.halfHeight = (top - bottom) / 2;
+        }
+
+        /** Shows LABEL followed by VALUE, or nothing if not VISIBLE. Returns if it drew. */
+        boolean show(boolean visible, int value) {
+            if (drawn && visible == this.visible && (!visible || value == this.value)) {
+                return false;
+            }
+            this.visible = visible;
+            this.value = value;
+            draw(visible ? label + value : null);
+            return true;
+        }
+
+        /** Shows TEXT, or nothing if it is null. Returns if it drew. */
+        boolean show(String text) {
+            if (drawn && (text == null ? this.text == null : text.equals(this.text))) {
+                return false;
+            }
+            draw(text);
+            return true;
+        }
+
+        private void draw(String newText) {
+            text = newText;
+            drawn = true;
+            StdDraw.setPenColor(Color.BLACK);
+            StdDraw.filledRectangle(centerX, centerY, halfWidth, halfHeight);
+            if (newText == null) {
+                return;
+            }
+            StdDraw.setPenColor(Color.WHITE);
+            if (align == LEFT) {
+                StdDraw.textLeft(x, y, newText);
+            } else if (align == RIGHT) {
+                StdDraw.textRight(x, y, newText);
+            } else {
+                StdDraw.text(x, y, newText);
+            }
+        }
+    }
+
+    /**
+     * HUD for a view WIDTH tiles wide whose map is HEIGHT tiles tall; the HUD uses the
+     * rows above it.
+     */
+    public Hud(int width, int height) {
+        double third = width / 3.0;
+        trailSteps = new Widget("Steps till Trails: ", LEFT, 1, height + 4,
+                0, third, height + 3, height + 5);
+        armor = new Widget("Armor durability: ", LEFT, 1, height + 2,
+                0, third, height + 1, height + 3);
+        encounterSteps = new Widget("Steps Remaining: ", CENTER, width / 2.0, height + 4,
+                third, 2 * third, height + 3, height + 5);
+        gems = new Widget("Gems Collected: ", CENTER, width / 2.0, height + 2,
+                third, 2 * third, height + 1, height + 3);
+        mouseTile = new Widget("", RIGHT, width - 1, height + 3,
+                2 * third, width, height + 1, height + 5);
+        widgets = new Widget[]{trailSteps, armor, encounterSteps, gems, mouseTile};
+    }
+
+    /** Makes the next update redraw every widget, e.g. after the screen was cleared. */
+    public void invalidate() {
+        for (Widget widget : widgets) {
+            widget.drawn = false;
+        }
+    }
+
+    /**
+     * Redraws the widgets whose values differ in FRAME. TILE is the tile under the mouse,
+     * or null to keep showing the last one. Returns whether anything was drawn, i.e.
+     * whether StdDraw.show is needed.
+     */
+    boolean update(FrameState frame, TETile tile) {
+        Font font = StdDraw.getFont();
+        StdDraw.setFont(FONT);
+        boolean changed = false;
+        changed |= mouseTile.show(tile == null ? mouseTile.text : tile.description());
+        changed |= trailSteps.show(true, frame.trailStepsLeft);
+        changed |= armor.show(frame.armorStepsLeft > 0, frame.armorStepsLeft);
+        changed |= encounterSteps.show(frame.inEncounter, frame.encounterStepsLeft);
+        changed |= gems.show(frame.inEncounter, frame.gemsCollected);
+        StdDraw.setFont(font);
+        return changed;
+    }
+}
@@ -0,0 +1,258 @@
+package byow.Core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the keystrokes of one keyboard session, so a crash loses at most
+ * the last GROUP_COMMIT_MILLIS of input instead of everything since the last ":Q".
+ *
+ * The journal is a sequence of frames, each [payload length][CRC32 of payload][payload].
+ * The first frame holds the seed, every later frame holds a batch of keys or the length
+ * an undo took the history back to. append() and undoTo() only put an entry on a queue.
+ * A background thread takes the first pending entry, waits up to GROUP_COMMIT_MILLIS for
+ * more, then writes them all, in order, and forces the channel once (group commit).
+ * recover() reads the frames back, applying undos, and truncates a torn or corrupt tail
+ * left by a crash in the middle of a write.
+ *
+ * close() ends the journal with a closed frame, so a journal without one is a session
+ * that crashed. recover() only returns those: a cleanly closed session is already in the
+ * save it was closed after.
+ */
+public class KeystrokeJournal {
+    static final long GROUP_COMMIT_MILLIS = 20;
+    private static final byte SEED_FRAME = 0;
+    private static final byte KEYS_FRAME = 1;
+    private static final byte UNDO_FRAME = 2;
+    private static final byte CLOSED_FRAME = 3;
+    private static final int HEADER_BYTES = 8;
+    /* Queue entries are a key as its char value, CLOSE, or -2 - length for undoTo(length). */
+    private static final int CLOSE = -1;
+
+    private final FileChannel channel;
+    private final LinkedBlockingQueue<Integer> pending;
+    private final Thread writer;
+    private volatile IOException failure;
+
+    private KeystrokeJournal(FileChannel channel) {
+        this.channel = channel;
+        this.pending = new LinkedBlockingQueue<>();
+        this.writer = new Thread(this::writeLoop, "keystroke-journal");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Starts a new journal in FILE for a game with SEED whose keystrokes so far are
+     * HISTORY, replacing whatever FILE held. Throws IllegalArgumentException in case of
+     * problems.
+     */
+    static KeystrokeJournal open(File file, long seed, CharSequence history) {
+        try {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            KeystrokeJournal journal = new KeystrokeJournal(channel);
+            journal.writeFrame(SEED_FRAME, ByteBuffer.allocate(Long.BYTES).putLong(0, seed));
+            if (history.length() > 0) {
+                journal.writeFrame(KEYS_FRAME, encode(history));
+            }
+            channel.force(false);
+            journal.writer.start();
+            return journal;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Queues KEY to be written. Never blocks. */
+    void append(char key) {
+        pending.offer((int) key);
+    }
+
+    /**
+     * Queues a record that the history was taken back to its first LENGTH keys. Never
+     * blocks.
+     */
+    void undoTo(int length) {
+        pending.offer(-2 - length);
+    }
+
+    /**
+     * Writes every queued key and a closed frame, forces the journal to disk and closes
+     * it. Only call this once the session is safely saved: recover() ignores a closed
+     * journal. Throws IllegalArgumentException if any write failed.
+     */
+    void close() {
+        pending.offer(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException excp) {
+            failure = excp;
+        }
+        if (failure != null) {
+            throw new IllegalArgumentException(failure.getMessage());
+        }
+    }
+
+    /**
+     * Returns the game recorded in FILE as a GameState with no positions or checkpoint,
+     * or null if FILE holds no complete seed frame or was closed by close(). Everything
+     * after the last intact frame is cut off. Throws IllegalArgumentException in case of
+     * problems.
+     */
+    static GameState recover(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer contents = ByteBuffer.allocate((int) channel.size());
+            while (contents.hasRemaining() && channel.read(contents) >= 0) {
+                continue;
+            }
+            contents.flip();
+            Long seed = null;
+            StringBuilder history = new StringBuilder();
+            CRC32 crc = new CRC32();
+            int intact = 0;
+            boolean closed = false;
+            while (contents.remaining() >= HEADER_BYTES) {
+                int length = contents.getInt();
+                int checksum = contents.getInt();
+                if (length <= 0 || length > contents.remaining()) {
+                    break;
+                }
+                ByteBuffer payload = contents.slice(contents.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                contents.position(contents.position() + length);
+                byte type = payload.get();
+                if (type == SEED_FRAME && seed == null) {
+                    seed = payload.getLong();
+                } else if (type == KEYS_FRAME && seed != null) {
+                    while (payload.hasRemaining()) {
+                        history.append((char) payload.get());
+                    }
+                } else if (type == UNDO_FRAME && seed != null && length == 1 + Integer.BYTES
+                        && payload.getInt(1) >= 0 && payload.getInt(1) <= history.length()) {
+                    history.setLength(payload.getInt(1));
+                } else if (type == CLOSED_FRAME && seed != null && length == 1) {
+                    closed = true;
+                } else {
+                    break;
+                }
+                intact = contents.position();
+            }
+            if (intact < channel.size()) {
+                channel.truncate(intact);
+            }
+            if (seed == null || closed) {
+                return null;
+            }
+            return new GameState(seed, null, null, history.toString());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        List<Integer> batch = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(pending.take());
+                long deadline = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(GROUP_COMMIT_MILLIS);
+                long wait;
+                while (batch.get(batch.size() - 1) != CLOSE
+                        && (wait = deadline - System.nanoTime()) > 0) {
+                    Integer entry = pending.poll(wait, TimeUnit.NANOSECONDS);
+                    if (entry != null) {
+                        batch.add(entry);
+                        pending.drainTo(batch);
+                    }
+                }
+            } catch (InterruptedException excp) {
+                closing = true;
+            }
+            if (failure == null) {
+                try {
+                    writeBatch(batch);
+                } catch (IOException excp) {
+                    failure = excp;
+                }
+            }
+            closing |= batch.contains(CLOSE);
+            batch.clear();
+        }
+    }
+
+    /*
+     * Writes BATCH as frames in queue order, ending with a closed frame if it holds
+     * CLOSE, and forces them once, if there was any.
+     */
+    private void writeBatch(List<Integer> batch) throws IOException {
+        StringBuilder keys = new StringBuilder(batch.size());
+        boolean wrote = false;
+        for (int entry : batch) {
+            if (entry >= 0) {
+                keys.append((char) entry);
+            } else if (entry != CLOSE) {
+                if (keys.length() > 0) {
+                    writeFrame(KEYS_FRAME, encode(keys));
+                    keys.setLength(0);
+                }
+                writeFrame(UNDO_FRAME, ByteBuffer.allocate(Integer.BYTES).putInt(0, -2 - entry));
+                wrote = true;
+            }
+        }
+        if (keys.length() > 0) {
+            writeFrame(KEYS_FRAME, encode(keys));
+            wrote = true;
+        }
+        if (batch.contains(CLOSE)) {
+            writeFrame(CLOSED_FRAME, ByteBuffer.allocate(0));
+            wrote = true;
+        }
+        if (wrote) {
+            channel.force(false);
+        }
+    }
+
+    private void writeFrame(byte type, ByteBuffer body) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + 1 + body.remaining());
+        frame.position(HEADER_BYTES);
+        frame.put(type).put(body);
+        CRC32 crc = new CRC32();
+        crc.update(frame.array(), HEADER_BYTES, frame.position() - HEADER_BYTES);
+        frame.putInt(0, frame.position() - HEADER_BYTES);
+        frame.putInt(4, (int) crc.getValue());
+        frame.flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    private static ByteBuffer encode(CharSequence keys) {
+        ByteBuffer bytes = ByteBuffer.allocate(keys.length());
+        for (int i = 0; i < keys.length(); i++) {
+            bytes.put((byte) keys.charAt(i));
+        }
+        return bytes.flip();
+    }
+}
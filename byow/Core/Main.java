@@ -1,8 +1,14 @@
 package byow.Core;
 
+import java.io.File;
+
 /** This is the main entry point for the program. This class simply parses
  *  the command line inputs, and lets the byow.Core.Engine class take over
- *  in either keyboard or input string mode.
+ *  in either keyboard or input string mode. The -f flag instead runs the
+ *  headless byow.Core.SeedFarm over a seed range or seed file, -r
+ *  replays the input string stored in a file, and -t plays in a terminal.
+ *  The byow.width and byow.height properties set the size of a keyboard world,
+ *  and byow.chunked builds it only near the players.
  */
 public class Main {
     public static void main(String[] args) {
@@ -12,13 +18,23 @@ public class Main {
         } else if (args.length == 2 && args[0].equals("-s")) {
             Engine engine = new Engine();
             engine.interactWithInputString(args[1]);
+        } else if (args.length == 2 && args[0].equals("-f")) {
+            SeedFarm.main(new String[]{args[1]});
+        } else if (args.length == 2 && args[0].equals("-r")) {
+            Engine engine = new Engine();
+            engine.interactWithInputFile(new File(args[1]));
+        } else if (args.length == 1 && args[0].equals("-t")) {
+            Engine engine = new Engine();
+            engine.interactWithTerminal(System.in, System.out);
         // DO NOT CHANGE THESE LINES YET ;)
         } else if (args.length == 2 && args[0].equals("-p")) {
             System.out.println("Coming soon.");
         }
         // DO NOT CHANGE THESE LINES YET ;)
         else {
-            Engine engine = new Engine();
+            Engine engine = new Engine(Integer.getInteger("byow.width", Engine.WIDTH),
+                    Integer.getInteger("byow.height", Engine.HEIGHT),
+                    Boolean.getBoolean("byow.chunked"));
             engine.interactWithKeyboard();
         }
     }
@@ -0,0 +1,116 @@
+package byow.Core;
+
+import byow.TileEngine.Palette;
+import byow.TileEngine.TileGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the grid-heavy generation steps of a World on a ForkJoinPool while producing
+ * exactly the same tiles as World's single-threaded steps.
+ *
+ * The map is split into vertical strips of columns:
+ *  - Hallways: every strip replays the full, ordered hallway walk but only writes its
+ *    own columns, so each tile sees the same sequence of writes as before.
+ *  - Rooms: placed rooms never overlap, so each room is carved by its own task. Floor
+ *    types are still drawn up front in room order.
+ *  - Unblock: the sequential pass reads already-updated tiles to its left. Strips are
+ *    first swept in parallel against the original left neighbours, then any strip whose
+ *    left neighbour column changed in a way that could matter is reset and redone in
+ *    order, left to right.
+ */
+public class ParallelGenerator {
+    private static final int MIN_STRIP_WIDTH = 32;
+    private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+    static void addHallways(World world) {
+        world.tiles.makeWritable();
+        int[] bounds = strips(0, world.worldWidth + 1);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            int from = bounds[i], to = bounds[i + 1];
+            tasks.add(action(() -> world.stampHallways(from, to)));
+        }
+        runAll(tasks);
+        unblock(world);
+    }
+
+    static void addRooms(World world) {
+        world.tiles.makeWritable();
+        Random rand = new Random(world.worldSeed);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (World.Room room : world.rooms) {
+            int floorType = rand.nextInt(3);
+            tasks.add(action(() -> world.addRoom(room, floorType)));
+        }
+        runAll(tasks);
+        unblock(world);
+    }
+
+    static void unblock(World world) {
+        TileGrid tiles = world.tiles;
+        TileGrid original = tiles.snapshot();
+        tiles.makeWritable();
+        int[] bounds = strips(1, world.worldWidth);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            int from = bounds[i], to = bounds[i + 1];
+            tasks.add(action(() -> world.unblockColumns(from, to, original, original)));
+        }
+        runAll(tasks);
+
+        for (int i = 1; i + 1 < bounds.length; i++) {
+            int from = bounds[i], to = bounds[i + 1];
+            if (leftNeighbourMatters(world, original, from)) {
+                tiles.copyColumns(original, from, to);
+                world.unblockColumns(from, to, tiles, original);
+            }
+        }
+    }
+
+    /**
+     * A wall in column X can only open horizontally if both of its neighbours are
+     * floor, and unblock only ever turns walls into floor. So the pass over column X
+     * changes only if some wall at (X - 1, y) opened while (X, y) is a wall and
+     * (X + 1, y) is floor.
+     */
+    private static boolean leftNeighbourMatters(World world, TileGrid original, int x) {
+        for (int y = 1; y < world.worldHeight; y++) {
+            if (world.tiles.get(x - 1, y) != original.get(x - 1, y)
+                    && original.get(x, y) == Palette.WALL
+                    && original.get(x + 1, y) == Palette.FLOOR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Splits [FROM, TO) into strip boundaries, at most a few strips per worker. */
+    private static int[] strips(int from, int to) {
+        int span = Math.max(to - from, 0);
+        int count = Math.max(1, Math.min(POOL.getParallelism() * 2, span / MIN_STRIP_WIDTH));
+        int[] bounds = new int[count + 1];
+        for (int i = 0; i <= count; i++) {
+            bounds[i] = from + (int) ((long) span * i / count);
+        }
+        return bounds;
+    }
+
+    private static ForkJoinTask<?> action(Runnable body) {
+        return new RecursiveAction() {
+            @Override
+            protected void compute() {
+                body.run();
+            }
+        };
+    }
+
+    private static void runAll(List<ForkJoinTask<?>> tasks) {
+        POOL.invoke(action(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+}
@@ -0,0 +1,76 @@
+package byow.Core;
+
+import edu.princeton.cs.introcs.StdDraw;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Render thread of a keyboard game. The simulation thread (the one running
+ * Engine.interact) owns the World and publishes a FrameState after every change; this
+ * thread draws only the latest one, at most once per frame of its FramePacer, so a burst
+ * of moves never waits for the frames in between to be drawn. Between frames it parks,
+ * waking early only when something is published.
+ *
+ * While the loop runs it is the only thread that touches StdDraw.
+ */
+public class RenderLoop implements Runnable {
+    private final Engine engine;
+    private final FramePacer pacer;
+    private final AtomicReference<FrameState> latest;
+    private final Thread thread;
+    private volatile boolean running;
+
+    RenderLoop(Engine engine) {
+        this.engine = engine;
+        this.pacer = FramePacer.fromProperty();
+        this.latest = new AtomicReference<>();
+        this.thread = new Thread(this, "render");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    /** Makes FRAME the next one to draw, replacing any frame not drawn yet. */
+    void publish(FrameState frame) {
+        latest.set(frame);
+        LockSupport.unpark(thread);
+    }
+
+    /** Stops the loop and waits for the frame being drawn, if any, to finish. */
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        FrameState drawn = null;
+        int mouseTile = -1;
+        while (running) {
+            LockSupport.parkNanos(pacer.nanosUntilFrame());
+            if (!running || !pacer.frameDue()) {
+                continue;
+            }
+            FrameState frame = latest.get();
+            int mouse = World.Coordinate.pack((int) StdDraw.mouseX(), (int) StdDraw.mouseY());
+            if (frame != null && frame != drawn) {
+                engine.render(frame);
+            }
+            if (frame != null && (frame != drawn || mouse != mouseTile)) {
+                engine.showUI(frame);
+            }
+            drawn = frame;
+            mouseTile = mouse;
+            pacer.frameShown();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package byow.Core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Headless driver for input strings such as "N543SWWWWAA:Q". It gives the same results as
+ * running the string through Engine.interact, but reads the input as a stream and
+ * applies each key with a single switch on the current state instead of re-testing the
+ * menu flags and the input source type for every key.
+ *
+ * Like interact, it stops at the end of the input, on Q in the main menu, or when the
+ * game is over. Game keys go through World.step, like every other front end, so a lost
+ * or cleared encounter is resolved on the key that caused it. B (the lore screen) is ignored since nothing is drawn.
+ */
+public class ReplayEngine {
+    private static final int BUFFER_CHARS = 1 << 13;
+
+    private enum State { MENU, SEED, GAME, DONE }
+
+    private final Engine engine;
+    private State state = State.MENU;
+    private final StringBuilder seed = new StringBuilder();
+    private boolean aboutToQuit = false;
+    private boolean quit = false;
+
+    public ReplayEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    /** Applies INPUT, which must already be upper case. */
+    public void replay(CharSequence input) {
+        for (int i = 0; i < input.length() && state != State.DONE; i++) {
+            feed(input.charAt(i));
+        }
+    }
+
+    /**
+     * Applies the UTF-8 text read from CHANNEL, upper-casing each key. Throws
+     * IllegalArgumentException in case of problems.
+     */
+    public void replay(ReadableByteChannel channel) {
+        Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8);
+        char[] buffer = new char[BUFFER_CHARS];
+        try {
+            int n;
+            while (state != State.DONE && (n = reader.read(buffer)) >= 0) {
+                for (int i = 0; i < n && state != State.DONE; i++) {
+                    feed(Character.toUpperCase(buffer[i]));
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Whether any further input would be ignored. */
+    public boolean isDone() {
+        return state == State.DONE;
+    }
+
+    /** Whether a game has been started or loaded and is not over yet. */
+    public boolean inGame() {
+        return state == State.GAME;
+    }
+
+    /** Whether the game has been saved with ":Q". */
+    public boolean hasQuit() {
+        return quit;
+    }
+
+    /** Applies the single upper case KEY. */
+    public void feed(char key) {
+        if (engine.gameOver) {
+            state = State.DONE;
+            return;
+        }
+        switch (state) {
+            case MENU:
+                if (key == 'N') {
+                    state = State.SEED;
+                } else if (key == 'L') {
+                    engine.loadGame(engine.readSave());
+                    startGame();
+                } else if (key == 'Q') {
+                    state = State.DONE;
+                }
+                break;
+            case SEED:
+                if (Character.isDigit(key)) {
+                    seed.append(key);
+                } else if (key == 'S') {
+                    WorldCache.shared().generate(engine.world, Long.parseLong(seed.toString()));
+                    startGame();
+                }
+                break;
+            case GAME:
+                play(key);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void startGame() {
+        state = State.GAME;
+        engine.world.settle();
+        endIfOver();
+    }
+
+    /** Ends the replay if the game is over, as interact does before reading the next key. */
+    private void endIfOver() {
+        if (engine.checkGameOver() != null) {
+            state = State.DONE;
+        }
+    }
+
+    private void play(char key) {
+        World world = engine.world;
+        if (!aboutToQuit) {
+            aboutToQuit = key == ':';
+        } else if (key == 'Q') {
+            engine.quitWorld(world, false);
+            quit = true;
+        }
+        world.step(key);
+        endIfOver();
+    }
+}
@@ -0,0 +1,66 @@
+package byow.Core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Uniform grid of buckets over the world used to answer "does this room overlap any
+ * placed room?" without walking every placed room. Each room is registered in every
+ * bucket its rectangle touches, so a query only has to look at the handful of rooms
+ * sharing a bucket with the candidate.
+ */
+public class RoomIndex {
+    private static final int BUCKET_SIZE = 16;
+    private final int bucketsWide;
+    private final int bucketsHigh;
+    private final List<List<World.Room>> buckets;
+
+    public RoomIndex(int width, int height) {
+        this.bucketsWide = width / BUCKET_SIZE + 1;
+        this.bucketsHigh = height / BUCKET_SIZE + 1;
+        int count = bucketsWide * bucketsHigh;
+        this.buckets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            buckets.add(null);
+        }
+    }
+
+    public void add(World.Room room) {
+        for (int bx = bucketX(room.bottomLeft.x); bx <= bucketX(room.topRight.x); bx++) {
+            for (int by = bucketY(room.bottomLeft.y); by <= bucketY(room.topRight.y); by++) {
+                int i = by * bucketsWide + bx;
+                List<World.Room> bucket = buckets.get(i);
+                if (bucket == null) {
+                    bucket = new ArrayList<>(4);
+                    buckets.set(i, bucket);
+                }
+                bucket.add(room);
+            }
+        }
+    }
+
+    public boolean overlapsAny(World.Room toAdd) {
+        for (int bx = bucketX(toAdd.bottomLeft.x); bx <= bucketX(toAdd.topRight.x); bx++) {
+            for (int by = bucketY(toAdd.bottomLeft.y); by <= bucketY(toAdd.topRight.y); by++) {
+                List<World.Room> bucket = buckets.get(by * bucketsWide + bx);
+                if (bucket == null) {
+                    continue;
+                }
+                for (World.Room room : bucket) {
+                    if (World.overlaps(toAdd, room)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private int bucketX(int x) {
+        return Math.min(Math.max(x, 0) / BUCKET_SIZE, bucketsWide - 1);
+    }
+
+    private int bucketY(int y) {
+        return Math.min(Math.max(y, 0) / BUCKET_SIZE, bucketsHigh - 1);
+    }
+}
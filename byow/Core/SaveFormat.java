@@ -0,0 +1,303 @@
+package byow.Core;
+
+import byow.TileEngine.TileGrid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact, versioned binary encoding of a GameState, used for world.txt instead of Java
+ * serialization. Every integer is a zigzag varint, so small values take one byte.
+ *
+ *  header      "BYOW" version
+ *  seed        varint
+ *  positions   P1.x P1.y P2.x P2.y
+ *  history     length, then 3 bits per key for the move keys WASDIJKL packed into
+ *              ceil(3 * length / 8) bytes, then the number of escapes followed by
+ *              (index delta, char) for every key that is not a move key (their 3-bit
+ *              slot is left as 0)
+ *  checkpoint  0, or 1 followed by the WorldCheckpoint fields and both grids
+ *              run-length encoded as (run length, tile id) pairs
+ *
+ * Encoding and decoding stream straight to and from the file. Saves written by older
+ * versions with Java serialization are still read (see read).
+ */
+public class SaveFormat {
+    private static final byte[] MAGIC = {'B', 'Y', 'O', 'W'};
+    private static final int VERSION = 1;
+    private static final String MOVE_KEYS = "WASDIJKL";
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    /** Writes STATE to FILE. Throws IllegalArgumentException in case of problems. */
+    static void write(File file, GameState state) {
+        if (file.isDirectory()) {
+            throw new IllegalArgumentException("cannot overwrite directory");
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+            write(out, state);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Reads the GameState in FILE, whether it was written by this class or by Java
+     * serialization. Throws IllegalArgumentException in case of problems.
+     */
+    static GameState read(File file) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("must be a normal file");
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            in.mark(2);
+            int first = in.read();
+            int second = in.read();
+            in.reset();
+            if (((first << 8) | second) == JAVA_SERIALIZATION_MAGIC) {
+                return PersistenceUtils.readObject(file, GameState.class);
+            }
+            return read(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    static void write(OutputStream out, GameState state) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeVarLong(out, state.seed);
+        writeCoordinate(out, state.currPosP1);
+        writeCoordinate(out, state.currPosP2);
+        writeHistory(out, state.keystrokeHistory);
+        WorldCheckpoint cp = state.checkpoint;
+        if (cp == null) {
+            out.write(0);
+            return;
+        }
+        out.write(1);
+        writeVarInt(out, cp.step);
+        writeVarInt(out, cp.width);
+        writeVarInt(out, cp.height);
+        writeCoordinate(out, cp.currPosP1);
+        writeCoordinate(out, cp.currPosP2);
+        writeCoordinate(out, cp.fireDoor);
+        writeCoordinate(out, cp.waterDoor);
+        writeCoordinate(out, cp.armor);
+        out.write((cp.prevPosP1 != null ? 1 : 0) | (cp.prevPosP2 != null ? 2 : 0)
+                | (cp.prevWorld != null ? 4 : 0) | (cp.gameLost ? 8 : 0)
+                | (cp.inEncounter ? 16 : 0));
+        if (cp.prevPosP1 != null) {
+            writeCoordinate(out, cp.prevPosP1);
+        }
+        if (cp.prevPosP2 != null) {
+            writeCoordinate(out, cp.prevPosP2);
+        }
+        writeVarInt(out, cp.armorStepsLeft);
+        writeVarInt(out, cp.gemsCollected);
+        writeVarInt(out, cp.totalStepsTaken);
+        writeVarInt(out, cp.totalEncounterSteps);
+        writeVarInt(out, cp.encounterStepsLeft);
+        writeVarInt(out, cp.gemDraws);
+        writeGrid(out, cp.tiles);
+        if (cp.prevWorld != null) {
+            writeGrid(out, cp.prevWorld);
+        }
+    }
+
+    static GameState read(InputStream in) throws IOException {
+        for (byte b : MAGIC) {
+            if (readByte(in) != b) {
+                throw new IOException("not a save file");
+            }
+        }
+        int version = readByte(in);
+        if (version != VERSION) {
+            throw new IOException("unsupported save version " + version);
+        }
+        long seed = readVarLong(in);
+        World.Coordinate p1 = readCoordinate(in);
+        World.Coordinate p2 = readCoordinate(in);
+        String history = readHistory(in);
+        if (readByte(in) == 0) {
+            return new GameState(seed, p1, p2, history, null);
+        }
+        int step = readVarInt(in);
+        int width = readVarInt(in);
+        int height = readVarInt(in);
+        World.Coordinate cpP1 = readCoordinate(in);
+        World.Coordinate cpP2 = readCoordinate(in);
+        World.Coordinate fireDoor = readCoordinate(in);
+        World.Coordinate waterDoor = readCoordinate(in);
+        World.Coordinate armor = readCoordinate(in);
+        int flags = readByte(in);
+        World.Coordinate prevP1 = (flags & 1) != 0 ? readCoordinate(in) : null;
+        World.Coordinate prevP2 = (flags & 2) != 0 ? readCoordinate(in) : null;
+        int armorStepsLeft = readVarInt(in);
+        int gemsCollected = readVarInt(in);
+        int totalStepsTaken = readVarInt(in);
+        int totalEncounterSteps = readVarInt(in);
+        int encounterStepsLeft = readVarInt(in);
+        int gemDraws = readVarInt(in);
+        TileGrid tiles = readGrid(in, width, height);
+        TileGrid prevWorld = (flags & 4) != 0 ? readGrid(in, width, height) : null;
+        WorldCheckpoint cp = new WorldCheckpoint(step, width, height, tiles, prevWorld,
+                cpP1, cpP2, prevP1, prevP2, fireDoor, waterDoor, armor,
+                armorStepsLeft, gemsCollected, totalStepsTaken, totalEncounterSteps,
+                encounterStepsLeft, gemDraws, (flags & 8) != 0, (flags & 16) != 0);
+        return new GameState(seed, p1, p2, history, cp);
+    }
+
+    /* HISTORY */
+
+    private static void writeHistory(OutputStream out, String history) throws IOException {
+        int length = history.length();
+        writeVarInt(out, length);
+        byte[] packed = new byte[(3 * length + 7) / 8];
+        List<Integer> escapes = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            int code = MOVE_KEYS.indexOf(history.charAt(i));
+            if (code < 0) {
+                escapes.add(i);
+                code = 0;
+            }
+            int bit = 3 * i;
+            int word = code << (bit & 7);
+            packed[bit >> 3] |= (byte) word;
+            if ((bit & 7) > 5) {
+                packed[(bit >> 3) + 1] |= (byte) (word >> 8);
+            }
+        }
+        out.write(packed);
+        writeVarInt(out, escapes.size());
+        int last = 0;
+        for (int index : escapes) {
+            writeVarInt(out, index - last);
+            writeVarInt(out, history.charAt(index));
+            last = index;
+        }
+    }
+
+    private static String readHistory(InputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0 || length > (Integer.MAX_VALUE - 7) / 3) {
+            throw new IOException("corrupt history length");
+        }
+        byte[] packed = in.readNBytes((3 * length + 7) / 8);
+        if (packed.length * 8 < 3 * length) {
+            throw new EOFException("truncated save file");
+        }
+        char[] keys = new char[length];
+        for (int i = 0; i < length; i++) {
+            int bit = 3 * i;
+            int word = packed[bit >> 3] & 0xff;
+            if ((bit & 7) > 5) {
+                word |= (packed[(bit >> 3) + 1] & 0xff) << 8;
+            }
+            keys[i] = MOVE_KEYS.charAt((word >> (bit & 7)) & 7);
+        }
+        int escapes = readVarInt(in);
+        int index = 0;
+        for (int i = 0; i < escapes; i++) {
+            int delta = readVarInt(in);
+            if (delta < 0 || delta >= length - index) {
+                throw new IOException("corrupt history escape");
+            }
+            index += delta;
+            keys[index] = (char) readVarInt(in);
+        }
+        return new String(keys);
+    }
+
+    /* GRIDS AND COORDINATES */
+
+    private static void writeGrid(OutputStream out, TileGrid grid) throws IOException {
+        byte[] cells = grid.toBytes();
+        int i = 0;
+        while (i < cells.length) {
+            int run = 1;
+            while (i + run < cells.length && cells[i + run] == cells[i]) {
+                run += 1;
+            }
+            writeVarInt(out, run);
+            out.write(cells[i]);
+            i += run;
+        }
+    }
+
+    private static TileGrid readGrid(InputStream in, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0 || width >= World.MAX_SIZE || height >= World.MAX_SIZE) {
+            throw new IOException("corrupt world size");
+        }
+        byte[] cells = new byte[width * height];
+        int i = 0;
+        while (i < cells.length) {
+            int run = readVarInt(in);
+            byte id = (byte) readByte(in);
+            if (run <= 0 || i + run > cells.length) {
+                throw new IOException("corrupt tile data");
+            }
+            for (int end = i + run; i < end; i++) {
+                cells[i] = id;
+            }
+        }
+        return TileGrid.fromBytes(width, height, cells);
+    }
+
+    private static void writeCoordinate(OutputStream out, World.Coordinate c) throws IOException {
+        writeVarInt(out, c.x);
+        writeVarInt(out, c.y);
+    }
+
+    private static World.Coordinate readCoordinate(InputStream in) throws IOException {
+        int x = readVarInt(in);
+        int y = readVarInt(in);
+        return new World.Coordinate(x, y);
+    }
+
+    /* VARINTS */
+
+    static void writeVarInt(OutputStream out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+    }
+
+    static int readVarInt(InputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    static long readVarLong(InputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("truncated save file");
+        }
+        return b;
+    }
+}
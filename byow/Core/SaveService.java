@@ -0,0 +1,108 @@
+package byow.Core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes saves to one file on a background thread so the game loop never waits on the
+ * disk. A GameState is already an immutable snapshot (the history as a String and a
+ * copy-on-write checkpoint), so handing one over is cheap.
+ *
+ * Each save is written to a temporary file next to the target, forced to disk and
+ * renamed over the target, so a crash leaves either the old or the new save. Requests
+ * that arrive while one is still queued replace it, so a burst of saves costs one write.
+ * Pending saves are finished before the JVM exits.
+ */
+public class SaveService {
+    /** Seconds between autosaves, from the byow.autosave property. 0 turns them off. */
+    static final long AUTOSAVE_SECONDS = Long.getLong("byow.autosave", 60);
+
+    private final File target;
+    private final File temp;
+    private final ExecutorService writer;
+    private final AtomicReference<GameState> pending;
+    private volatile Exception failure;
+    private long lastAutosave;
+    private int lastAutosaveStep = -1;
+
+    public SaveService(File target) {
+        this.target = target;
+        this.temp = new File(target.getPath() + ".tmp");
+        this.pending = new AtomicReference<>();
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "save-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lastAutosave = System.nanoTime();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+    }
+
+    /** Queues STATE to be written, replacing any save that has not started yet. */
+    public void save(GameState state) {
+        if (pending.getAndSet(state) == null) {
+            writer.execute(this::writePending);
+        }
+    }
+
+    /**
+     * Whether an autosave is due for a game at STEP moves: AUTOSAVE_SECONDS have passed
+     * since the last one and the game has moved since. Resets the timer when true.
+     */
+    public boolean autosaveDue(int step) {
+        long now = System.nanoTime();
+        if (AUTOSAVE_SECONDS <= 0 || step == lastAutosaveStep
+                || now - lastAutosave < AUTOSAVE_SECONDS * 1_000_000_000L) {
+            return false;
+        }
+        lastAutosave = now;
+        lastAutosaveStep = step;
+        return true;
+    }
+
+    /**
+     * Waits until every queued save has been written. Throws IllegalArgumentException if
+     * a save failed since the last flush.
+     */
+    public void flush() {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException excp) {
+            throw new IllegalArgumentException(excp.getCause().getMessage());
+        }
+        Exception failed = failure;
+        failure = null;
+        if (failed != null) {
+            throw new IllegalArgumentException(failed.getMessage());
+        }
+    }
+
+    private void writePending() {
+        GameState state = pending.getAndSet(null);
+        try {
+            SaveFormat.write(temp, state);
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException excp) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException excp) {
+            failure = excp;
+        }
+    }
+}
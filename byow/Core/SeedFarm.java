@@ -0,0 +1,147 @@
+package byow.Core;
+
+import byow.TileEngine.ImageRenderer;
+import byow.TileEngine.Palette;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static byow.Core.PersistenceUtils.readContentsAsString;
+
+/**
+ * Headless batch generator used to vet seeds offline. Generates one world per seed on
+ * every available core, without touching StdDraw or the interactive input loop, and
+ * prints one CSV line of summary stats per world followed by the overall throughput.
+ *
+ * Seeds are given either as an inclusive range "FIRST-LAST" or as the path of a file
+ * with one seed per line (blank lines and lines starting with '#' are skipped).
+ *
+ * If the byow.previews property names a directory, a thumbnail of every world is also
+ * written there as SEED.png, PREVIEW_TILE_SIZE pixels per tile (see ImageRenderer).
+ *
+ * Ex:
+ *      java byow.Core.Main -f 1-100000
+ *      java byow.Core.Main -f seeds.txt
+ *      java -Djava.awt.headless=true -Dbyow.previews=previews byow.Core.Main -f 1-500
+ */
+public class SeedFarm {
+    private static final int BATCH_SIZE = 4096;
+    static final int PREVIEW_TILE_SIZE = 4;
+    private static final String PREVIEWS = System.getProperty("byow.previews");
+
+    /** Summary of a single generated world. */
+    public static class Stats {
+        final long seed;
+        final int rooms;
+        final int doorDistance;
+        final double floorCoverage;
+
+        Stats(long seed, int rooms, int doorDistance, double floorCoverage) {
+            this.seed = seed;
+            this.rooms = rooms;
+            this.doorDistance = doorDistance;
+            this.floorCoverage = floorCoverage;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d,%d,%d,%.4f", seed, rooms, doorDistance, floorCoverage);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: SeedFarm FIRST-LAST | SEED_FILE");
+            System.exit(0);
+        }
+        run(parseSeeds(args[0]), Engine.WIDTH, Engine.HEIGHT);
+    }
+
+    /** Generates a WIDTH x HEIGHT world for every seed in SEEDS and prints its stats. */
+    public static void run(long[] seeds, int width, int height) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        System.out.println("seed,rooms,door_distance,floor_coverage");
+        long start = System.nanoTime();
+        try {
+            for (int from = 0; from < seeds.length; from += BATCH_SIZE) {
+                int to = Math.min(from + BATCH_SIZE, seeds.length);
+                List<Future<Stats>> batch = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    long seed = seeds[i];
+                    batch.add(pool.submit(() -> generate(seed, width, height)));
+                }
+                StringBuilder out = new StringBuilder();
+                for (Future<Stats> result : batch) {
+                    out.append(result.get()).append('\n');
+                }
+                System.out.print(out);
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("# %d worlds in %.2f s on %d threads (%.1f worlds/s)%n",
+                seeds.length, seconds, threads, seeds.length / seconds);
+    }
+
+    /** Generates the world for SEED and summarizes it. */
+    public static Stats generate(long seed, int width, int height) {
+        World world = new World(width, height);
+        world.generate(seed, false);
+        int open = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                byte id = world.tiles.get(x, y);
+                if (id != Palette.WALL && id != Palette.NOTHING) {
+                    open += 1;
+                }
+            }
+        }
+        if (PREVIEWS != null) {
+            ImageRenderer preview = new ImageRenderer(PREVIEW_TILE_SIZE);
+            preview.renderFrame(world.tiles);
+            preview.writePng(new File(PREVIEWS, seed + ".png"));
+        }
+        int doorDistance = Math.abs(World.Coordinate.packedX(world.fireDoor)
+                - World.Coordinate.packedX(world.waterDoor))
+                + Math.abs(World.Coordinate.packedY(world.fireDoor)
+                - World.Coordinate.packedY(world.waterDoor));
+        return new Stats(seed, world.rooms.size(), doorDistance, (double) open / (width * height));
+    }
+
+    static long[] parseSeeds(String spec) {
+        int dash = spec.indexOf('-', 1);
+        if (dash > 0 && !new File(spec).isFile()) {
+            long first = Long.parseLong(spec.substring(0, dash));
+            long last = Long.parseLong(spec.substring(dash + 1));
+            if (last < first || last - first >= Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("invalid seed range: " + spec);
+            }
+            long[] seeds = new long[(int) (last - first + 1)];
+            for (int i = 0; i < seeds.length; i++) {
+                seeds[i] = first + i;
+            }
+            return seeds;
+        }
+        List<Long> seeds = new ArrayList<>();
+        for (String line : readContentsAsString(new File(spec)).split("\n")) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                seeds.add(Long.parseLong(line));
+            }
+        }
+        long[] result = new long[seeds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = seeds.get(i);
+        }
+        return result;
+    }
+}
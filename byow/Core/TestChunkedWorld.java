@@ -0,0 +1,67 @@
+package byow.Core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestChunkedWorld {
+    private static final long[] SEEDS = {1, 42, 83975123456L, 2873123, 999999999L};
+
+    private static void assertSameWorld(World flat, World chunked) {
+        assertEquals(flat.currPosP1, chunked.currPosP1);
+        assertEquals(flat.currPosP2, chunked.currPosP2);
+        assertEquals(flat.fireDoor, chunked.fireDoor);
+        assertEquals(flat.waterDoor, chunked.waterDoor);
+        assertEquals(flat.gameLost, chunked.gameLost);
+        assertEquals(flat.inEncounter, chunked.inEncounter);
+        assertArrayEquals(flat.tiles.toBytes(), chunked.tiles.toBytes());
+    }
+
+    private static String randomKeys(long seed, int length) {
+        Random rand = new Random(seed);
+        StringBuilder keys = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            keys.append("WASDIJKL".charAt(rand.nextInt(8)));
+        }
+        return keys.toString();
+    }
+
+    @Test
+    public void testGeneratesTheFlatWorld() {
+        int[][] sizes = {{80, 30}, {100, 50}, {301, 77}, {1000, 60}};
+        for (int[] size : sizes) {
+            for (long seed : SEEDS) {
+                World flat = new World(size[0], size[1]);
+                flat.generate(seed);
+                World chunked = new World(size[0], size[1], true);
+                chunked.generate(seed);
+                assertSameWorld(flat, chunked);
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyBuildsNearThePlayers() {
+        World chunked = new World(4000, 40, true);
+        chunked.generate(42);
+        int strips = (4000 + ChunkedGenerator.STRIP_WIDTH - 1) / ChunkedGenerator.STRIP_WIDTH;
+        assertTrue(chunked.tiles.generatedStrips() < strips / 2);
+    }
+
+    @Test
+    public void testPlaysLikeTheFlatWorld() {
+        for (long seed : SEEDS) {
+            String keys = randomKeys(seed, 3000);
+            World flat = new World(600, 40);
+            flat.generate(seed);
+            flat.step(keys);
+            World chunked = new World(600, 40, true);
+            chunked.generate(seed);
+            chunked.step(keys);
+            assertEquals(flat.keystrokeHistory.toString(), chunked.keystrokeHistory.toString());
+            assertSameWorld(flat, chunked);
+        }
+    }
+}
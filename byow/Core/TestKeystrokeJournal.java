@@ -0,0 +1,74 @@
+package byow.Core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TestKeystrokeJournal {
+    private static final long SAVED_SEED = 83975123456L;
+
+    private static File tempJournal() throws IOException {
+        File file = File.createTempFile("journal", ".bin");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static GameState save(long seed, String history) {
+        return new GameState(seed, new World.Coordinate(1, 1), new World.Coordinate(2, 2),
+                history);
+    }
+
+    @Test
+    public void testClosedJournalIsNotRecovered() throws IOException {
+        File file = tempJournal();
+        KeystrokeJournal journal = KeystrokeJournal.open(file, 42, "ddw");
+        journal.append('s');
+        journal.close();
+        assertNull(KeystrokeJournal.recover(file));
+    }
+
+    @Test
+    public void testCrashedJournalIsRecovered() throws IOException {
+        File file = tempJournal();
+        KeystrokeJournal journal = KeystrokeJournal.open(file, 42, "ddw");
+        GameState crashed = KeystrokeJournal.recover(file);
+        journal.close();
+        assertNotNull(crashed);
+        assertEquals(Long.valueOf(42), crashed.seed);
+        assertEquals("ddw", crashed.keystrokeHistory);
+    }
+
+    @Test
+    public void testCrashBeatsSaveWithAnotherSeed() throws IOException {
+        File file = tempJournal();
+        KeystrokeJournal journal = KeystrokeJournal.open(file, 42, "ddwwa");
+        GameState crashed = KeystrokeJournal.recover(file);
+        journal.close();
+        GameState loaded = Engine.recoverGame(crashed, save(SAVED_SEED, "dddddddd"));
+        assertEquals(Long.valueOf(42), loaded.seed);
+        assertEquals("ddwwa", loaded.keystrokeHistory);
+    }
+
+    @Test
+    public void testCrashContinuingSaveKeepsItsHistory() throws IOException {
+        File file = tempJournal();
+        KeystrokeJournal journal = KeystrokeJournal.open(file, SAVED_SEED, "dddwws");
+        GameState crashed = KeystrokeJournal.recover(file);
+        journal.close();
+        GameState loaded = Engine.recoverGame(crashed, save(SAVED_SEED, "ddd"));
+        assertEquals(Long.valueOf(SAVED_SEED), loaded.seed);
+        assertEquals("dddwws", loaded.keystrokeHistory);
+    }
+
+    @Test
+    public void testCrashWithoutSave() throws IOException {
+        File file = tempJournal();
+        KeystrokeJournal journal = KeystrokeJournal.open(file, 7, "s");
+        GameState crashed = KeystrokeJournal.recover(file);
+        journal.close();
+        assertSame(crashed, Engine.recoverGame(crashed, null));
+    }
+}
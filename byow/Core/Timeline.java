@@ -0,0 +1,183 @@
+package byow.Core;
+
+import byow.TileEngine.TileGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Step-by-step record of a game, used to rewind it (the undo key) or to look at any
+ * earlier state after it ends without replaying from the seed.
+ *
+ * World.move records every move as a few ints: the values a move can change (positions,
+ * counters, step totals and flags) and the tiles it changed (see TileGrid.changesSince),
+ * appended to flat arrays. Every KEYFRAME_INTERVAL moves, whenever a move changes more
+ * than MAX_DELTA tiles, and whenever an encounter starts or ends, a full WorldCheckpoint
+ * is kept instead; its grid is an O(1) copy-on-write snapshot, and it also holds what
+ * only changes with encounters (the grid and positions saved when one starts, and how
+ * far worldRand has advanced). Seeking restores the nearest keyframe at or before the
+ * target and applies the moves after it, so it costs O(KEYFRAME_INTERVAL) moves.
+ */
+public class Timeline {
+    static final int KEYFRAME_INTERVAL = 64;
+    static final int MAX_DELTA = 256;
+    private static final int[] NO_CHANGES = new int[0];
+    /* Ints per step in states, and the bits of its last int. */
+    private static final int STATE_INTS = 9;
+    private static final int LOST = 1, IN_ENCOUNTER = 2;
+
+    private final int firstStep;
+    private final StringBuilder keys;
+    private final ArrayList<WorldCheckpoint> keyframes;
+    /* Number of recorded steps, counting firstStep. */
+    private int size;
+    /* STATE_INTS ints for each recorded step; see writeState. */
+    private int[] states;
+    /* The tiles changed by step firstStep + i are changes[changeEnds[i - 1], changeEnds[i]). */
+    private int[] changes;
+    private int[] changeEnds;
+    /* Snapshot of the world's tiles at the last recorded step. */
+    private TileGrid last;
+
+    /** Starts recording WORLD from its current state. */
+    public Timeline(World world) {
+        this.keys = new StringBuilder(world.keystrokeHistory);
+        this.keyframes = new ArrayList<>();
+        this.states = new int[STATE_INTS * KEYFRAME_INTERVAL];
+        this.changes = new int[4 * KEYFRAME_INTERVAL];
+        this.changeEnds = new int[KEYFRAME_INTERVAL];
+        WorldCheckpoint start = new WorldCheckpoint(world);
+        this.firstStep = start.step();
+        keyframes.add(start);
+        last = start.tiles;
+        append(world, NO_CHANGES);
+    }
+
+    /** First step that can be sought to. */
+    public int firstStep() {
+        return firstStep;
+    }
+
+    /** Last recorded step. */
+    public int lastStep() {
+        return firstStep + size - 1;
+    }
+
+    /** Records the move WORLD just made. */
+    void record(World world) {
+        int step = world.keystrokeHistory.length();
+        if (step != lastStep() + 1) {
+            throw new IllegalStateException("expected step " + (lastStep() + 1) + ", got "
+                    + step);
+        }
+        keys.append(world.keystrokeHistory.charAt(step - 1));
+        boolean wasInEncounter = (states[(size - 1) * STATE_INTS + STATE_INTS - 1]
+                & IN_ENCOUNTER) != 0;
+        boolean due = world.inEncounter != wasInEncounter
+                || (step - firstStep) % KEYFRAME_INTERVAL == 0;
+        // Diffing a chunked grid against an encounter's would build all of it.
+        int[] delta = due ? NO_CHANGES : world.tiles.changesSince(last);
+        if (due || delta.length > MAX_DELTA) {
+            WorldCheckpoint keyframe = new WorldCheckpoint(world);
+            keyframes.add(keyframe);
+            last = keyframe.tiles;
+            delta = NO_CHANGES;
+        } else {
+            last = world.tiles.snapshot();
+        }
+        append(world, delta);
+    }
+
+    /**
+     * Puts WORLD in the state it had right after STEP. Later steps are kept, so this can
+     * be used to move back and forth through a finished game; use rewind to carry on
+     * playing from STEP.
+     */
+    public void seek(World world, int step) {
+        if (step < firstStep || step > lastStep()) {
+            throw new IllegalArgumentException("step " + step + " is outside ["
+                    + firstStep + ", " + lastStep() + "]");
+        }
+        WorldCheckpoint keyframe = keyframes.get(keyframeAt(step));
+        world.tiles = keyframe.tiles.snapshot();
+        for (int i = keyframe.step() - firstStep + 1; i <= step - firstStep; i++) {
+            world.tiles.apply(changes, changeEnds[i - 1], changeEnds[i]);
+        }
+        keyframe.restoreState(world);
+        readState(world, step - firstStep);
+        world.keystrokeHistory = new StringBuilder(keys.substring(0, step));
+        if (world.latestCheckpoint == null || world.latestCheckpoint.step() > step) {
+            world.latestCheckpoint = keyframe;
+        }
+    }
+
+    /** Seeks WORLD to STEP and forgets every later step, so recording resumes there. */
+    public void rewind(World world, int step) {
+        seek(world, step);
+        size = step - firstStep + 1;
+        keyframes.subList(keyframeAt(step) + 1, keyframes.size()).clear();
+        keys.setLength(step);
+        last = world.tiles.snapshot();
+    }
+
+    /* Index in keyframes of the last keyframe at or before STEP. */
+    private int keyframeAt(int step) {
+        int low = 0;
+        int high = keyframes.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (keyframes.get(mid).step() <= step) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /* Records the state of WORLD and the tiles DELTA changed as the next step. */
+    private void append(World world, int[] delta) {
+        if (size == changeEnds.length) {
+            states = Arrays.copyOf(states, 2 * states.length);
+            changeEnds = Arrays.copyOf(changeEnds, 2 * changeEnds.length);
+        }
+        int start = size == 0 ? 0 : changeEnds[size - 1];
+        if (start + delta.length > changes.length) {
+            changes = Arrays.copyOf(changes, Math.max(2 * changes.length,
+                    start + delta.length));
+        }
+        System.arraycopy(delta, 0, changes, start, delta.length);
+        changeEnds[size] = start + delta.length;
+        writeState(world, size * STATE_INTS);
+        size += 1;
+    }
+
+    private void writeState(World world, int at) {
+        states[at] = world.currPosP1;
+        states[at + 1] = world.currPosP2;
+        states[at + 2] = world.armorStepsLeft;
+        states[at + 3] = world.gemsCollected;
+        states[at + 4] = world.totalStepsTaken;
+        states[at + 5] = world.totalEncounterSteps;
+        states[at + 6] = world.encounterStepsLeft;
+        states[at + 7] = world.gemDraws;
+        states[at + 8] = (world.gameLost ? LOST : 0) | (world.inEncounter ? IN_ENCOUNTER : 0);
+    }
+
+    /* Puts the state recorded for step firstStep + I back into WORLD. */
+    private void readState(World world, int i) {
+        int at = i * STATE_INTS;
+        world.currPosP1 = states[at];
+        world.currPosP2 = states[at + 1];
+        world.armorStepsLeft = states[at + 2];
+        world.gemsCollected = states[at + 3];
+        world.totalStepsTaken = states[at + 4];
+        world.totalEncounterSteps = states[at + 5];
+        world.encounterStepsLeft = states[at + 6];
+        if (world.gemDraws != states[at + 7]) {
+            world.replayGemDraws(states[at + 7]);
+        }
+        world.gameLost = (states[at + 8] & LOST) != 0;
+        world.inEncounter = (states[at + 8] & IN_ENCOUNTER) != 0;
+    }
+}
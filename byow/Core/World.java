@@ -1,6 +1,6 @@
 package byow.Core;
-import byow.TileEngine.TETile;
-import byow.TileEngine.Tileset;
+import byow.TileEngine.Palette;
+import byow.TileEngine.TileGrid;
 
 import java.io.Serializable;
 import java.util.LinkedList;
@@ -12,20 +12,41 @@ public class World {
 
     int worldWidth, worldHeight;
     long worldSeed;
-    TETile[][] tiles, prevWorld;
+    TileGrid tiles, prevWorld;
     LinkedList<Room> rooms;
-    Coordinate currPosP1, currPosP2;
+    RoomIndex roomIndex;
+    /* Positions are packed into ints (see Coordinate.pack) so that moving allocates
+       nothing. Coordinate.NOWHERE stands for no position. */
+    int currPosP1 = Coordinate.NOWHERE, currPosP2 = Coordinate.NOWHERE;
     StringBuilder keystrokeHistory;
-    Coordinate fireDoor, waterDoor;
-    Coordinate prevPosP1, prevPosP2;
-    Coordinate armor;
+    int fireDoor = Coordinate.NOWHERE, waterDoor = Coordinate.NOWHERE;
+    int prevPosP1 = Coordinate.NOWHERE, prevPosP2 = Coordinate.NOWHERE;
+    int armor = Coordinate.NOWHERE;
     int armorStepsLeft = 0;
     int gemsCollected = 0;
     int totalStepsTaken = 0;
     int totalEncounterSteps = 40;
     int encounterStepsLeft = totalEncounterSteps;
     boolean gameLost = false, inEncounter = false;
+    int gemDraws = 0;
+    WorldCheckpoint latestCheckpoint;
+    /* Receives every keystroke appended to keystrokeHistory, if set. */
+    KeystrokeJournal journal;
+    /* Records every move for seeking and undo, if set. */
+    Timeline timeline;
+    /* Whether generate builds the tiles lazily, strip by strip; see ChunkedGenerator. */
+    final boolean chunked;
+    /* Builds the strips of a chunked world once it is generated, else null. */
+    ChunkedGenerator chunks;
+    /* The GameEvent bits of the current move. */
+    private int events;
     private final int TRAIL_STEPS_LIMIT = 120;
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    static final int CHECKPOINT_INTERVAL = 1024;
+    /* Columns around either player and the camera focus a chunked world keeps built. */
+    static final int CHUNK_RADIUS = 64;
+    /** Exclusive bound on either dimension, so every position fits Coordinate.pack. */
+    static final int MAX_SIZE = 1 << 15;
 
     public int getTrailStepsLimit() {
         return TRAIL_STEPS_LIMIT;
@@ -34,13 +55,35 @@ public class World {
     Random worldRand = new Random(worldSeed);
 
     public World(int width, int height) {
+        this(width, height, false);
+    }
+
+    /**
+     * A WIDTH x HEIGHT world. If CHUNKED, generate only places the rooms and the tiles
+     * are built strip by strip as the players come near them, so a large world never
+     * holds or pays for the parts nobody visits. Either way the tiles are the same.
+     */
+    public World(int width, int height, boolean chunked) {
+        this.chunked = chunked;
+        if (width <= 0 || height <= 0 || width >= MAX_SIZE || height >= MAX_SIZE) {
+            throw new IllegalArgumentException("World size must be between 1 and "
+                    + (MAX_SIZE - 1) + ", got " + width + "x" + height);
+        }
         this.worldWidth = width - 1;
         this.worldHeight = height - 1;
         this.rooms = new LinkedList<>();
         createWorld(width, height);
     }
 
+    /**
+     * A position in the world. The positions a World keeps while playing are packed
+     * into a single int instead, x in the high 16 bits and y in the low 16 bits; the
+     * static methods below convert between the two forms.
+     */
     public static class Coordinate implements Serializable {
+        private static final long serialVersionUID = 4412162100011092596L;
+        /** Packed form of a missing (null) position. */
+        public static final int NOWHERE = -1;
         int x;
         int y;
 
@@ -52,16 +95,52 @@ public class World {
         public Coordinate shift(int xShift, int yShift) {
             return new Coordinate(x + xShift, y + yShift);
         }
-        public boolean equals(Coordinate other) {
-            if (other != null) {
-                return this.x == other.x && this.y == other.y;
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Coordinate)) {
+                return false;
             }
-            return false;
+            Coordinate other = (Coordinate) o;
+            return this.x == other.x && this.y == other.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return pack(x, y);
         }
 
         public Coordinate copy() {
             return new Coordinate(this.x, this.y);
         }
+
+        /** Packs (X, Y); both must lie in [0, 32768). */
+        public static int pack(int x, int y) {
+            return x << 16 | y;
+        }
+
+        /** Packs C, or returns NOWHERE if C is null. */
+        public static int pack(Coordinate c) {
+            return c == null ? NOWHERE : pack(c.x, c.y);
+        }
+
+        public static int packedX(int packed) {
+            return packed >> 16;
+        }
+
+        public static int packedY(int packed) {
+            return packed & 0xffff;
+        }
+
+        /** Returns PACKED moved by (XSHIFT, YSHIFT), like shift. */
+        public static int shift(int packed, int xShift, int yShift) {
+            return packed + (xShift << 16) + yShift;
+        }
+
+        /** Unpacks PACKED, or returns null if it is NOWHERE. */
+        public static Coordinate unpack(int packed) {
+            return packed == NOWHERE ? null : new Coordinate(packedX(packed), packedY(packed));
+        }
     }
 
     public static class Room {
@@ -80,45 +159,53 @@ public class World {
     }
 
     public void createWorld(int width, int height) {
-        tiles = new TETile[width][height];
+        tiles = new TileGrid(width, height);
         initWorld(width, height);
     }
 
     public void generate(long seed) {
+        generate(seed, !chunked && (worldWidth + 1) * (worldHeight + 1) >= PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Generates the world for SEED. When PARALLEL is true, hallway stamping, room
+     * carving and the unblock passes are split across a ForkJoinPool; the resulting
+     * world is identical to the single-threaded one.
+     */
+    public void generate(long seed, boolean parallel) {
+        generate(seed, parallel, GenerationPipeline.standard());
+    }
+
+    /** Generates the world for SEED with the given stages and returns their timings. */
+    public GenerationContext generate(long seed, boolean parallel, GenerationPipeline pipeline) {
         this.worldSeed = seed;
         this.keystrokeHistory = new StringBuilder();
-        createRoomObjects(seed);
-        addHallways();
-        addRooms();
-        spawnPlayer("P1");
-        spawnPlayer("P2");
-
+        this.latestCheckpoint = null;
+        this.chunks = null;
+        return pipeline.run(this, seed, parallel);
     }
 
     public void initWorld(int width, int height) {
+        tiles.fill(Palette.NOTHING);
         for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                tiles[x][y] = Tileset.NOTHING;
-            }
-        }
-        for (int x = 0; x < width; x++) {
-            tiles[x][0] = Tileset.WALL;
-            tiles[x][height - 1] = Tileset.WALL;
+            tiles.set(x, 0, Palette.WALL);
+            tiles.set(x, height - 1, Palette.WALL);
         }
         for (int y = 0; y < height; y++) {
-            tiles[0][y] = Tileset.WALL;
-            tiles[width - 1][y] = Tileset.WALL;
+            tiles.set(0, y, Palette.WALL);
+            tiles.set(width - 1, y, Palette.WALL);
         }
     }
 
-    private void createRoomObjects(long seed) {
+    void createRoomObjects(long seed) {
         Random rand = new Random(seed);
-        int roomWidth, roomHeight;
-        Coordinate roomBl;
         int numRooms = rand.nextInt(20);
         if (numRooms < 15) {
             numRooms = 15;
         }
+        int roomWidth, roomHeight;
+        Coordinate roomBl;
+        roomIndex = new RoomIndex(worldWidth + 1, worldHeight + 1);
         int i = 0;
         while (i < numRooms) {
             roomWidth = ensureCorrectRoomDim(rand.nextInt(20));
@@ -127,33 +214,24 @@ public class World {
                     rand.nextInt(worldHeight - roomHeight - 1));
             Room toAdd = new Room(roomBl, roomWidth, roomHeight);
 
-            if (!isOverlap(toAdd, rooms)) {
+            if (!roomIndex.overlapsAny(toAdd)) {
                 rooms.addLast(toAdd);
-                if (fireDoor == null) {
-                    fireDoor = toAdd.center;
-                } else if (waterDoor == null) {
-                    waterDoor = toAdd.center;
+                roomIndex.add(toAdd);
+                if (fireDoor == Coordinate.NOWHERE) {
+                    fireDoor = Coordinate.pack(toAdd.center);
+                } else if (waterDoor == Coordinate.NOWHERE) {
+                    waterDoor = Coordinate.pack(toAdd.center);
                 } else {
-                    armor = toAdd.center;
+                    armor = Coordinate.pack(toAdd.center);
                 }
                 i += 1;
             }
         }
     }
 
-    private boolean isOverlap(Room toAdd, LinkedList<Room> roomsToAdd) {
-        if (rooms.isEmpty()) {
-            return false;
-        }
-        for (Room room : roomsToAdd) {
-            if (!(toAdd.bottomLeft.x > room.topRight.x
-                    || toAdd.topRight.x < room.bottomLeft.x)
-                    && !(toAdd.bottomLeft.y > room.topRight.y
-                    || toAdd.topRight.y < room.bottomLeft.y)) {
-                return true;
-            }
-        }
-        return false;
+    static boolean overlaps(Room a, Room b) {
+        return !(a.bottomLeft.x > b.topRight.x || a.topRight.x < b.bottomLeft.x)
+                && !(a.bottomLeft.y > b.topRight.y || a.topRight.y < b.bottomLeft.y);
     }
 
     private int ensureCorrectRoomDim(int dim) {
@@ -167,30 +245,31 @@ public class World {
     }
 
 
-    private void addRoom(Room room, int floorType) {
+    void addRoom(Room room, int floorType) {
         for (int x = room.bottomLeft.x; x <= room.topRight.x; x++) {
             for (int y = room.bottomLeft.y; y <= room.topRight.y; y++) {
                 if (x == room.bottomLeft.x
                         || x == room.topRight.x || y == room.bottomLeft.y
                         || y == room.topRight.y) {
-                    if (tiles[x][y].equals(Tileset.NOTHING)) {
-                        tiles[x][y] = Tileset.WALL;
+                    if (tiles.get(x, y) == Palette.NOTHING) {
+                        tiles.set(x, y, Palette.WALL);
                     }
                 } else {
                     if (floorType == 0) {
-                        tiles[x][y] = Tileset.FIRE;
+                        tiles.set(x, y, Palette.FIRE);
                     } else if (floorType == 1) {
-                        tiles[x][y] = Tileset.WATER;
+                        tiles.set(x, y, Palette.WATER);
                     } else {
-                        tiles[x][y] = Tileset.FLOOR;
+                        tiles.set(x, y, Palette.FLOOR);
                     }
                     if (!inEncounter) {
-                        if (x == fireDoor.x && y == fireDoor.y) {
-                            tiles[x][y] = Tileset.FIRE_DOOR;
-                        } else if (x == waterDoor.x && y == waterDoor.y) {
-                            tiles[x][y] = Tileset.WATER_DOOR;
-                        } else if (x == armor.x && y == armor.y) {
-                            tiles[x][y] = Tileset.ARMOR;
+                        int pos = Coordinate.pack(x, y);
+                        if (pos == fireDoor) {
+                            tiles.set(x, y, Palette.FIRE_DOOR);
+                        } else if (pos == waterDoor) {
+                            tiles.set(x, y, Palette.WATER_DOOR);
+                        } else if (pos == armor) {
+                            tiles.set(x, y, Palette.ARMOR);
                         }
                     }
                 }
@@ -198,7 +277,7 @@ public class World {
         }
     }
 
-    private void addRooms() {
+    void addRooms() {
         Random rand = new Random(worldSeed);
         for (Room room : rooms) {
             addRoom(room, rand.nextInt(3));
@@ -206,14 +285,20 @@ public class World {
         unblock();
     }
 
-    private void makeHorizHallwayFragment(int x, int y) {
-        tiles[x][y] = Tileset.FLOOR;
-        tiles[x][y + 1] = Tileset.WALL;
-        tiles[x][y - 1] = Tileset.WALL;
+    private void stamp(int x, int y, byte id, int minX, int maxX) {
+        if (x >= minX && x < maxX) {
+            tiles.set(x, y, id);
+        }
+    }
+
+    private void makeHorizHallwayFragment(int x, int y, int minX, int maxX) {
+        stamp(x, y, Palette.FLOOR, minX, maxX);
+        stamp(x, y + 1, Palette.WALL, minX, maxX);
+        stamp(x, y - 1, Palette.WALL, minX, maxX);
 
     }
 
-    private void addHorizHallway(Coordinate start, Coordinate end) {
+    private void addHorizHallway(Coordinate start, Coordinate end, int minX, int maxX) {
         if (end.x < start.x) {
             Coordinate temp = start;
             start = end;
@@ -221,20 +306,20 @@ public class World {
         }
         for (int x = start.x; x <= end.x; x++) {
             if (x < worldWidth) {
-                makeHorizHallwayFragment(x, start.y);
+                makeHorizHallwayFragment(x, start.y, minX, maxX);
             } else {
                 break;
             }
         }
     }
 
-    private void makeVertHallwayFragment(int x, int y) {
-        tiles[x][y] = Tileset.FLOOR;
-        tiles[x + 1][y] = Tileset.WALL;
-        tiles[x - 1][y] = Tileset.WALL;
+    private void makeVertHallwayFragment(int x, int y, int minX, int maxX) {
+        stamp(x, y, Palette.FLOOR, minX, maxX);
+        stamp(x + 1, y, Palette.WALL, minX, maxX);
+        stamp(x - 1, y, Palette.WALL, minX, maxX);
     }
 
-    private void addVertHallway(Coordinate start, Coordinate end) {
+    private void addVertHallway(Coordinate start, Coordinate end, int minX, int maxX) {
         if (start.y > end.y) {
             Coordinate temp = start;
             start = end;
@@ -242,125 +327,235 @@ public class World {
         }
         for (int y = start.y; y <= end.y; y++) {
             if (y < worldHeight) {
-                makeVertHallwayFragment(start.x, y);
+                makeVertHallwayFragment(start.x, y, minX, maxX);
             } else {
                 break;
             }
         }
     }
 
-    private void addHallway(Coordinate start, Coordinate end) {
-        addHorizHallway(new Coordinate(start.x, end.y), end);
-        addVertHallway(start, new Coordinate(start.x, end.y));
+    private void addHallway(Coordinate start, Coordinate end, int minX, int maxX) {
+        addHorizHallway(new Coordinate(start.x, end.y), end, minX, maxX);
+        addVertHallway(start, new Coordinate(start.x, end.y), minX, maxX);
     }
 
     private void unblock() {
-        for (int x = 1; x < worldWidth; x++) {
+        unblockColumns(1, worldWidth, tiles, tiles);
+    }
+
+    /**
+     * Opens up walls in columns [FROMX, TOX) that sit between two floors. Neighbours
+     * left of FROMX are read from LEFT and neighbours at TOX are read from RIGHT, so
+     * column strips can be processed independently (see ParallelGenerator).
+     */
+    void unblockColumns(int fromX, int toX, TileGrid left, TileGrid right) {
+        for (int x = fromX; x < toX; x++) {
+            TileGrid leftOf = x - 1 < fromX ? left : tiles;
+            TileGrid rightOf = x + 1 >= toX ? right : tiles;
             for (int y = 1; y < worldHeight; y++) {
-                if (tiles[x][y].equals(Tileset.WALL)) {
-                    if ((tiles[x + 1][y].equals(Tileset.FLOOR)
-                            && tiles[x - 1][y].equals(Tileset.FLOOR))
-                            || (tiles[x][y + 1].equals(Tileset.FLOOR)
-                            && tiles[x][y - 1].equals(Tileset.FLOOR))) {
-                        tiles[x][y] = Tileset.FLOOR;
+                if (tiles.get(x, y) == Palette.WALL) {
+                    if ((rightOf.get(x + 1, y) == Palette.FLOOR
+                            && leftOf.get(x - 1, y) == Palette.FLOOR)
+                            || (tiles.get(x, y + 1) == Palette.FLOOR
+                            && tiles.get(x, y - 1) == Palette.FLOOR)) {
+                        tiles.set(x, y, Palette.FLOOR);
                     }
                 }
             }
         }
     }
 
-    private void addHallways() {
+    void addHallways() {
+        stampHallways(0, worldWidth + 1);
+        unblock();
+    }
+
+    /** Stamps every room-to-room hallway, writing only the columns in [MINX, MAXX). */
+    void stampHallways(int minX, int maxX) {
         Room currRoom = null;
         Room nextRoom = null;
         LinkedList<Room> copy = new LinkedList<>(rooms);
         while (!copy.isEmpty()) {
             nextRoom = copy.poll();
             if (!(currRoom == null)) {
-                addHallway(currRoom.center, nextRoom.center);
+                addHallway(currRoom.center, nextRoom.center, minX, maxX);
             }
             currRoom = nextRoom;
         }
-        unblock();
     }
 
 
-    public Boolean movePlayer(TETile player, Coordinate currPos, Coordinate targetPos) {
-        TETile targetTile = tiles[targetPos.x][targetPos.y];
-        if (!targetTile.equals(Tileset.WALL) && !targetTile.equals(Tileset.NOTHING)
-                && !targetTile.equals(Tileset.FIRE_GUY) && !targetTile.equals(Tileset.WATER_LADY)) {
-            if (currPos.equals(fireDoor)) {
-                tiles[currPos.x][currPos.y] = Tileset.FIRE_DOOR;
-            } else if (currPos.equals((waterDoor))) {
-                tiles[currPos.x][currPos.y] = Tileset.WATER_DOOR;
+    public Boolean movePlayer(byte player, int currPos, int targetPos) {
+        int currX = Coordinate.packedX(currPos), currY = Coordinate.packedY(currPos);
+        int targetX = Coordinate.packedX(targetPos), targetY = Coordinate.packedY(targetPos);
+        byte targetTile = tiles.get(targetX, targetY);
+        int targetFlags = Palette.flags(targetTile);
+        if ((targetFlags & Palette.PASSABLE) == 0) {
+            return false;
+        }
+        if ((targetFlags & Palette.COLLECTIBLE) != 0) {
+            if (targetTile == Palette.ARMOR) {
+                armorStepsLeft += 101;
+                events |= GameEvent.ARMOR_PICKED.bit();
+            } else if (inEncounter) {
+                gemsCollected += 1;
+                events |= GameEvent.GEM_COLLECTED.bit();
+            }
+        }
+        if (inEncounter) {
+            encounterStepsLeft -= 1;
+        }
+        if (armorStepsLeft > 0) {
+            armorStepsLeft -= 1;
+        }
+        if (player == Palette.FIRE_GUY) {
+            if (totalStepsTaken > TRAIL_STEPS_LIMIT) {
+                tiles.set(currX, currY, Palette.FIRE);
             } else {
-                tiles[currPos.x][currPos.y] = Tileset.FLOOR;
+                tiles.set(currX, currY, Palette.FLOOR);
             }
-            if (inEncounter) {
-                if (targetTile.equals(Tileset.GEM)) {
-                    gemsCollected += 1;
-                }
-                encounterStepsLeft -= 1;
+            if ((targetFlags & Palette.HAZARD_TO_FIRE) != 0 && armorStepsLeft == 0) {
+                //Encounter
+                createEncounter(Palette.WATER_LADY);
+                inEncounter = true;
+                events |= GameEvent.ENCOUNTER_STARTED.bit();
+            } else {
+                tiles.set(targetX, targetY, player);
             }
-            if (targetTile.equals(Tileset.ARMOR)) {
-                armorStepsLeft += 101;
-
+            currPosP1 = targetPos;
+        } else if (player == Palette.WATER_LADY) {
+            if (totalStepsTaken > TRAIL_STEPS_LIMIT) {
+                tiles.set(currX, currY, Palette.WATER);
+            } else {
+                tiles.set(currX, currY, Palette.FLOOR);
             }
-            if (armorStepsLeft > 0) {
-                armorStepsLeft -= 1;
+            if ((targetFlags & Palette.HAZARD_TO_WATER) != 0 && armorStepsLeft == 0) {
+                //Encounter
+                createEncounter(Palette.FIRE_GUY);
+                inEncounter = true;
+                events |= GameEvent.ENCOUNTER_STARTED.bit();
+            } else {
+                tiles.set(targetX, targetY, player);
             }
-            if (player.equals(Tileset.FIRE_GUY)) {
-                if (totalStepsTaken > TRAIL_STEPS_LIMIT) {
-                    tiles[currPos.x][currPos.y] = Tileset.FIRE;
-                } else {
-                    tiles[currPos.x][currPos.y] = Tileset.FLOOR;
-                }
-                if (targetTile.equals(Tileset.WATER) && armorStepsLeft == 0) {
-                    //Encounter
-                    createEncounter(Tileset.WATER_LADY);
-                    inEncounter = true;
-                } else {
-                    tiles[targetPos.x][targetPos.y] = player;
-                }
-                currPosP1 = targetPos.copy();
-            } else if (player.equals(Tileset.WATER_LADY)) {
-                if (totalStepsTaken > TRAIL_STEPS_LIMIT) {
-                    tiles[currPos.x][currPos.y] = Tileset.WATER;
-                } else {
-                    tiles[currPos.x][currPos.y] = Tileset.FLOOR;
-                }
-                if (targetTile.equals(Tileset.FIRE) && armorStepsLeft == 0) {
-                    //Encounter
-                    createEncounter(Tileset.FIRE_GUY);
-                    inEncounter = true;
-                } else {
-                    tiles[targetPos.x][targetPos.y] = player;
-                }
 
-                currPosP2 = targetPos.copy();
-            }
-            if (currPos.equals(fireDoor)) {
-                tiles[currPos.x][currPos.y] = Tileset.FIRE_DOOR;
-            } else if (currPos.equals((waterDoor))) {
-                tiles[currPos.x][currPos.y] = Tileset.WATER_DOOR;
-            }
-            return true;
+            currPosP2 = targetPos;
         }
-        return false;
+        if (currPos == fireDoor) {
+            tiles.set(currX, currY, Palette.FIRE_DOOR);
+        } else if (currPos == waterDoor) {
+            tiles.set(currX, currY, Palette.WATER_DOOR);
+        }
+        return true;
     }
 
 
-    public void move(TETile player, Coordinate currPos, char input) {
+    /** Moves PLAYER from CURRPOS one tile in the direction of INPUT; returns if it moved. */
+    public boolean move(byte player, int currPos, char input) {
         totalStepsTaken += 1;
         keystrokeHistory.append(input);
+        if (journal != null) {
+            journal.append(input);
+        }
+        boolean moved = false;
         if (input == 'W' || input == 'I') {
-            movePlayer(player, currPos, currPos.shift(0, 1));
+            moved = movePlayer(player, currPos, Coordinate.shift(currPos, 0, 1));
         } else if (input == 'S' || input == 'K') {
-            movePlayer(player, currPos, currPos.shift(0, -1));
+            moved = movePlayer(player, currPos, Coordinate.shift(currPos, 0, -1));
         } else if (input == 'A' || input == 'J') {
-            movePlayer(player, currPos, currPos.shift(-1, 0));
+            moved = movePlayer(player, currPos, Coordinate.shift(currPos, -1, 0));
         } else if (input == 'D' || input == 'L') {
-            movePlayer(player, currPos, currPos.shift(1, 0));
+            moved = movePlayer(player, currPos, Coordinate.shift(currPos, 1, 0));
         }
+        if (keystrokeHistory.length() % CHECKPOINT_INTERVAL == 0) {
+            latestCheckpoint = new WorldCheckpoint(this);
+        }
+        if (timeline != null) {
+            timeline.record(this);
+        }
+        return moved;
+    }
+
+    /** Whether both players stand on their doors. */
+    public boolean won() {
+        return currPosP1 == fireDoor && currPosP2 == waterDoor;
+    }
+
+    /** Whether the game is won or lost. */
+    public boolean isOver() {
+        return won() || gameLost;
+    }
+
+    /**
+     * Resolves an encounter that has run out of steps or has all its gems collected (see
+     * checkEncounter), unless the game is over. Returns the GameEvent bits this caused.
+     * Running it again does nothing, so a front end can call it before waiting for a key,
+     * e.g. to draw the resolved world.
+     */
+    public int settle() {
+        if (isOver() || !inEncounter) {
+            return 0;
+        }
+        checkEncounter();
+        if (gameLost) {
+            return GameEvent.LOST.bit();
+        }
+        return inEncounter ? 0 : GameEvent.ENCOUNTER_CLEARED.bit();
+    }
+
+    /**
+     * Applies KEY to a started game without drawing anything: fire guy moves for WASD and
+     * water lady for IJKL. This is the one way every front end (Engine.interact,
+     * ReplayEngine, loading a save) applies game keys. It settles, stops if the game is
+     * then over, moves, and settles again, so an encounter the key clears or runs out is
+     * resolved before this returns: the returned GameEvent bits include ENCOUNTER_CLEARED
+     * or LOST and isOver is already up to date. Since settle is idempotent, this is the
+     * same as settling before each key.
+     */
+    public int step(char key) {
+        int result = settle();
+        if (isOver()) {
+            return result;
+        }
+        result |= play(key) | settle();
+        loadChunks();
+        return result;
+    }
+
+    /**
+     * Steps through KEYS until they run out or the game is over. Returns the union of
+     * the GameEvent bits of every step.
+     */
+    public int step(CharSequence keys) {
+        int result = 0;
+        for (int i = 0; i < keys.length() && !isOver(); i++) {
+            result |= step(keys.charAt(i));
+        }
+        return result;
+    }
+
+    /* Moves a player for KEY without settling; see step. */
+    private int play(char key) {
+        byte player;
+        int currPos;
+        switch (key) {
+            case 'W': case 'A': case 'S': case 'D':
+                player = Palette.FIRE_GUY;
+                currPos = currPosP1;
+                break;
+            case 'I': case 'J': case 'K': case 'L':
+                player = Palette.WATER_LADY;
+                currPos = currPosP2;
+                break;
+            default:
+                return 0;
+        }
+        events = 0;
+        boolean moved = move(player, currPos, key);
+        int result = events | (moved ? GameEvent.MOVED : GameEvent.BLOCKED).bit();
+        if (won()) {
+            result |= GameEvent.WON.bit();
+        }
+        return result;
     }
 
     public void spawnPlayer(String player) {
@@ -368,29 +563,22 @@ public class World {
         while (true) {
             int randX = rand.nextInt(worldWidth);
             int randY = rand.nextInt(worldHeight);
-
-            if (tiles[randX][randY].equals(Tileset.FLOOR)) {
+            if (chunks != null && !chunks.mayBeFloor(randX, randY)) {
+                continue;
+            }
+            if (tiles.get(randX, randY) == Palette.FLOOR) {
                 if (player.equals("P1")) {
-                    tiles[randX][randY] = Tileset.FIRE_GUY;
-                    currPosP1 = new Coordinate(randX, randY);
+                    tiles.set(randX, randY, Palette.FIRE_GUY);
+                    currPosP1 = Coordinate.pack(randX, randY);
                 } else if (player.equals("P2")) {
-                    tiles[randX][randY] = Tileset.WATER_LADY;
-                    currPosP2 = new Coordinate(randX, randY);
+                    tiles.set(randX, randY, Palette.WATER_LADY);
+                    currPosP2 = Coordinate.pack(randX, randY);
                 }
                 break;
             }
         }
     }
 
-    private TETile[][] copyWorld(TETile[][] inTiles) {
-        int xLength = inTiles.length, yLength = inTiles[0].length;
-        TETile[][] copy = new TETile[xLength][yLength];
-        for (int x  = 0; x < xLength; x++) {
-            System.arraycopy(inTiles[x], 0, copy[x], 0, yLength);
-        }
-        return copy;
-    }
-
     public void checkEncounter() {
         if (gemsCollected == 5) {
             gemsCollected = 0;
@@ -398,37 +586,98 @@ public class World {
             encounterStepsLeft = totalEncounterSteps;
             inEncounter = false;
             tiles = prevWorld;
-            movePlayer(Tileset.FIRE_GUY, prevPosP1, prevPosP1);
-            movePlayer(Tileset.WATER_LADY, prevPosP2, prevPosP2);
+            movePlayer(Palette.FIRE_GUY, prevPosP1, prevPosP1);
+            movePlayer(Palette.WATER_LADY, prevPosP2, prevPosP2);
         } else if (encounterStepsLeft <= 0) {
             gameLost = true;
         }
     }
 
-    public void createEncounter(TETile player) {
-        tiles[currPosP1.x][currPosP1.y] = Tileset.FLOOR;
-        tiles[currPosP2.x][currPosP2.y] = Tileset.FLOOR;
-        prevPosP1 = currPosP1.copy();
-        prevPosP2 = currPosP2.copy();
-        prevWorld = copyWorld(tiles);
-        Coordinate location = new Coordinate((worldWidth / 2) - 9, (worldHeight / 2) - 4);
+    public void createEncounter(byte player) {
+        tiles.set(Coordinate.packedX(currPosP1), Coordinate.packedY(currPosP1), Palette.FLOOR);
+        tiles.set(Coordinate.packedX(currPosP2), Coordinate.packedY(currPosP2), Palette.FLOOR);
+        prevPosP1 = currPosP1;
+        prevPosP2 = currPosP2;
+        prevWorld = tiles.snapshot();
         initWorld(worldWidth + 1, worldHeight + 1);
-        Room encounterRoom = new Room(location, 20, 10);
+        Room encounterRoom = encounterRoom();
         addRoom(encounterRoom, 3);
-        movePlayer(player, encounterRoom.center, encounterRoom.center);
+        int center = Coordinate.pack(encounterRoom.center);
+        movePlayer(player, center, center);
         addGems(encounterRoom);
     }
+
+    /**
+     * In a chunked world, builds the strips within CHUNK_RADIUS columns of either player
+     * or the camera focus and forgets the ones farther away that were never changed. Does
+     * nothing otherwise, or during an encounter, whose grid is not chunked.
+     */
+    void loadChunks() {
+        int stripWidth = tiles.stripWidth();
+        if (stripWidth == 0) {
+            return;
+        }
+        int[] centers = {Coordinate.packedX(currPosP1), Coordinate.packedX(currPosP2),
+            Coordinate.packedX(focus())};
+        for (int x : centers) {
+            tiles.generateColumns(x - CHUNK_RADIUS, x + CHUNK_RADIUS + 1);
+        }
+        tiles.evictStrips(strip -> {
+            for (int x : centers) {
+                if (strip * stripWidth <= x + CHUNK_RADIUS
+                        && (strip + 1) * stripWidth > x - CHUNK_RADIUS) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Packed position the camera should center on: the encounter room during an
+     * encounter, since the position of the player left outside it is stale, and the
+     * midpoint between the players otherwise.
+     */
+    int focus() {
+        if (inEncounter) {
+            return Coordinate.pack(encounterRoom().center);
+        }
+        return Coordinate.pack((Coordinate.packedX(currPosP1) + Coordinate.packedX(currPosP2)) / 2,
+                (Coordinate.packedY(currPosP1) + Coordinate.packedY(currPosP2)) / 2);
+    }
+
+    private Room encounterRoom() {
+        Coordinate location = new Coordinate((worldWidth / 2) - 9, (worldHeight / 2) - 4);
+        return new Room(location, 20, 10);
+    }
+
     private void addGems(Room room) {
         int numGems = 5;
         while (numGems > 0) {
             int randX = worldRand.nextInt(room.topRight.x);
             int randY = worldRand.nextInt(room.topRight.y);
+            gemDraws += 2;
             int xPos = min(randX, randX + room.bottomLeft.x);
             int yPos = min(randY, randY + room.bottomLeft.y);
-            if (tiles[xPos][yPos].equals(Tileset.FLOOR)) {
-                tiles[xPos][yPos] = Tileset.GEM;
+            if (tiles.get(xPos, yPos) == Palette.FLOOR) {
+                tiles.set(xPos, yPos, Palette.GEM);
                 numGems -= 1;
             }
         }
     }
+
+    /**
+     * Brings worldRand to the state it had after DRAWS calls made by addGems, so that
+     * a world restored from a checkpoint places the same gems as the original.
+     */
+    void replayGemDraws(int draws) {
+        Room room = encounterRoom();
+        // worldRand is built before worldSeed is assigned, so it always starts from 0.
+        worldRand = new Random(0);
+        for (int i = 0; i < draws; i += 2) {
+            worldRand.nextInt(room.topRight.x);
+            worldRand.nextInt(room.topRight.y);
+        }
+        gemDraws = draws;
+    }
 }
@@ -0,0 +1,158 @@
+package byow.Core;
+
+import byow.TileEngine.TileGrid;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * In-process LRU cache of freshly generated worlds, keyed by seed and dimensions.
+ * Loading a save or starting a new game with a recently used seed then skips
+ * World.generate entirely.
+ *
+ * Entries hold the post-generation grid as a TileGrid snapshot, so storing a world and
+ * handing it back out are both O(1). The live World copies the grid on its first move.
+ * TileGrid's reference counts are atomic, so worlds restored from one entry may be
+ * played on different threads.
+ */
+public class WorldCache {
+    public static final int DEFAULT_CAPACITY = 16;
+    private static final WorldCache SHARED = new WorldCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final LinkedHashMap<Key, BaseWorld> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    public WorldCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BaseWorld> eldest) {
+                return size() > WorldCache.this.capacity;
+            }
+        };
+    }
+
+    /** The cache used by Engine. */
+    public static WorldCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Generates WORLD from SEED, reusing a cached copy of the same seed and dimensions if
+     * one exists. Only freshly constructed worlds go through the cache: regenerating a
+     * world that already has rooms keeps World.generate's existing behaviour.
+     */
+    public void generate(World world, long seed) {
+        if (!world.rooms.isEmpty()) {
+            world.generate(seed);
+            return;
+        }
+        Key key = new Key(seed, world.worldWidth + 1, world.worldHeight + 1, world.chunked);
+        BaseWorld base;
+        synchronized (this) {
+            base = entries.get(key);
+            if (base != null) {
+                hits += 1;
+            } else {
+                misses += 1;
+            }
+        }
+        if (base != null) {
+            base.restore(world, seed);
+            return;
+        }
+        world.generate(seed);
+        BaseWorld generated = new BaseWorld(world);
+        synchronized (this) {
+            entries.put(key, generated);
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "WorldCache[hits=" + hits + ", misses=" + misses + ", size=" + entries.size()
+                + "/" + capacity + "]";
+    }
+
+    private static class Key {
+        final long seed;
+        final int width;
+        final int height;
+        final boolean chunked;
+
+        Key(long seed, int width, int height, boolean chunked) {
+            this.seed = seed;
+            this.width = width;
+            this.height = height;
+            this.chunked = chunked;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return seed == other.seed && width == other.width && height == other.height
+                    && chunked == other.chunked;
+        }
+
+        @Override
+        public int hashCode() {
+            return (Long.hashCode(seed) * 31 * 31 + width * 31 + height) * 2
+                    + (chunked ? 1 : 0);
+        }
+    }
+
+    /** Everything World.generate produces, frozen right after generation. */
+    private static class BaseWorld {
+        final TileGrid tiles;
+        final ChunkedGenerator chunks;
+        final LinkedList<World.Room> rooms;
+        final int fireDoor, waterDoor, armor;
+        final int currPosP1, currPosP2;
+
+        BaseWorld(World world) {
+            this.tiles = world.tiles.snapshot();
+            this.chunks = world.chunks;
+            this.rooms = new LinkedList<>(world.rooms);
+            this.fireDoor = world.fireDoor;
+            this.waterDoor = world.waterDoor;
+            this.armor = world.armor;
+            this.currPosP1 = world.currPosP1;
+            this.currPosP2 = world.currPosP2;
+        }
+
+        void restore(World world, long seed) {
+            world.worldSeed = seed;
+            world.keystrokeHistory = new StringBuilder();
+            world.tiles = tiles.snapshot();
+            world.chunks = chunks;
+            world.rooms = new LinkedList<>(rooms);
+            world.fireDoor = fireDoor;
+            world.waterDoor = waterDoor;
+            world.armor = armor;
+            world.currPosP1 = currPosP1;
+            world.currPosP2 = currPosP2;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package byow.Core;
+
+import byow.TileEngine.TileGrid;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Full game state of a World after its first STEP recorded moves: both grids, every
+ * position, the armor and encounter counters, step totals and how far worldRand has
+ * advanced. Restoring a checkpoint and replaying the rest of the keystroke history
+ * gives the same world as replaying the whole history from the seed.
+ *
+ * Positions are kept as Coordinates rather than in the packed form World uses, so that
+ * the serialized form of older saves still loads.
+ *
+ * World takes a checkpoint every World.CHECKPOINT_INTERVAL moves. Because TileGrid
+ * snapshots are copy-on-write, holding one in memory is cheap; the grids are only
+ * flattened to bytes when the checkpoint is serialized into a save.
+ */
+public class WorldCheckpoint implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int step;
+    final int width, height;
+    final World.Coordinate currPosP1, currPosP2;
+    final World.Coordinate prevPosP1, prevPosP2;
+    final World.Coordinate fireDoor, waterDoor, armor;
+    final int armorStepsLeft;
+    final int gemsCollected;
+    final int totalStepsTaken;
+    final int totalEncounterSteps;
+    final int encounterStepsLeft;
+    final int gemDraws;
+    final boolean gameLost, inEncounter;
+    transient TileGrid tiles, prevWorld;
+
+    WorldCheckpoint(World world) {
+        this.step = world.keystrokeHistory.length();
+        this.width = world.worldWidth + 1;
+        this.height = world.worldHeight + 1;
+        this.tiles = world.tiles.snapshot();
+        this.prevWorld = world.prevWorld == null ? null : world.prevWorld.snapshot();
+        this.currPosP1 = World.Coordinate.unpack(world.currPosP1);
+        this.currPosP2 = World.Coordinate.unpack(world.currPosP2);
+        this.prevPosP1 = World.Coordinate.unpack(world.prevPosP1);
+        this.prevPosP2 = World.Coordinate.unpack(world.prevPosP2);
+        this.fireDoor = World.Coordinate.unpack(world.fireDoor);
+        this.waterDoor = World.Coordinate.unpack(world.waterDoor);
+        this.armor = World.Coordinate.unpack(world.armor);
+        this.armorStepsLeft = world.armorStepsLeft;
+        this.gemsCollected = world.gemsCollected;
+        this.totalStepsTaken = world.totalStepsTaken;
+        this.totalEncounterSteps = world.totalEncounterSteps;
+        this.encounterStepsLeft = world.encounterStepsLeft;
+        this.gemDraws = world.gemDraws;
+        this.gameLost = world.gameLost;
+        this.inEncounter = world.inEncounter;
+    }
+
+    WorldCheckpoint(int step, int width, int height, TileGrid tiles, TileGrid prevWorld,
+                    World.Coordinate currPosP1, World.Coordinate currPosP2,
+                    World.Coordinate prevPosP1, World.Coordinate prevPosP2,
+                    World.Coordinate fireDoor, World.Coordinate waterDoor,
+                    World.Coordinate armor, int armorStepsLeft, int gemsCollected,
+                    int totalStepsTaken, int totalEncounterSteps, int encounterStepsLeft,
+                    int gemDraws, boolean gameLost, boolean inEncounter) {
+        this.step = step;
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles;
+        this.prevWorld = prevWorld;
+        this.currPosP1 = currPosP1;
+        this.currPosP2 = currPosP2;
+        this.prevPosP1 = prevPosP1;
+        this.prevPosP2 = prevPosP2;
+        this.fireDoor = fireDoor;
+        this.waterDoor = waterDoor;
+        this.armor = armor;
+        this.armorStepsLeft = armorStepsLeft;
+        this.gemsCollected = gemsCollected;
+        this.totalStepsTaken = totalStepsTaken;
+        this.totalEncounterSteps = totalEncounterSteps;
+        this.encounterStepsLeft = encounterStepsLeft;
+        this.gemDraws = gemDraws;
+        this.gameLost = gameLost;
+        this.inEncounter = inEncounter;
+    }
+
+    /** Number of keystrokes of the history this checkpoint already includes. */
+    public int step() {
+        return step;
+    }
+
+    /** Puts WORLD back into this state. HISTORY must start with the checkpointed moves. */
+    void restore(World world, String history) {
+        if (world.worldWidth + 1 != width || world.worldHeight + 1 != height) {
+            throw new IllegalArgumentException("checkpoint is for a " + width + "x" + height
+                    + " world");
+        }
+        world.tiles = tiles.snapshot();
+        restoreState(world);
+        world.keystrokeHistory = new StringBuilder(history.substring(0, step));
+        world.latestCheckpoint = this;
+    }
+
+    /**
+     * Puts everything but the tiles, the history and the latest checkpoint of WORLD back
+     * into this state. Used by Timeline, which restores the tiles itself.
+     */
+    void restoreState(World world) {
+        world.prevWorld = prevWorld == null ? null : prevWorld.snapshot();
+        world.currPosP1 = World.Coordinate.pack(currPosP1);
+        world.currPosP2 = World.Coordinate.pack(currPosP2);
+        world.prevPosP1 = World.Coordinate.pack(prevPosP1);
+        world.prevPosP2 = World.Coordinate.pack(prevPosP2);
+        world.fireDoor = World.Coordinate.pack(fireDoor);
+        world.waterDoor = World.Coordinate.pack(waterDoor);
+        world.armor = World.Coordinate.pack(armor);
+        world.armorStepsLeft = armorStepsLeft;
+        world.gemsCollected = gemsCollected;
+        world.totalStepsTaken = totalStepsTaken;
+        world.totalEncounterSteps = totalEncounterSteps;
+        world.encounterStepsLeft = encounterStepsLeft;
+        world.gameLost = gameLost;
+        world.inEncounter = inEncounter;
+        world.replayGemDraws(gemDraws);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(tiles.toBytes());
+        out.writeObject(prevWorld == null ? null : prevWorld.toBytes());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        tiles = TileGrid.fromBytes(width, height, (byte[]) in.readObject());
+        byte[] prev = (byte[]) in.readObject();
+        prevWorld = prev == null ? null : TileGrid.fromBytes(width, height, prev);
+    }
+}
@@ -1,26 +1,55 @@
-package byow.InputDemo;
-
-/**
- * Created by hug.
- */
-import edu.princeton.cs.introcs.StdDraw;
-
-public class KeyboardInputSource implements InputSource {
-    private static final boolean PRINT_TYPED_KEYS = false;
-
-    public char getNextKey() {
-        while (true) {
-            if (StdDraw.hasNextKeyTyped()) {
-                char c = Character.toUpperCase(StdDraw.nextKeyTyped());
-                if (PRINT_TYPED_KEYS) {
-                    System.out.print(c);
-                }
-                return c;
-            }
-        }
-    }
-
-    public boolean possibleNextInput() {
-        return true;
-    }
-}
+package byow.InputDemo;
+
+/**
+ * Created by hug.
+ *
+ * Keys typed into any AWT window (i.e. the StdDraw window) are queued by an
+ * AWTEventListener as they arrive, so waiting for a key blocks instead of spinning on
+ * StdDraw.hasNextKeyTyped().
+ */
+import edu.princeton.cs.introcs.StdDraw;
+
+import java.awt.AWTEvent;
+import java.awt.Toolkit;
+import java.awt.event.KeyEvent;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class KeyboardInputSource implements InputSource {
+    private static final boolean PRINT_TYPED_KEYS = false;
+    private final LinkedBlockingQueue<Character> typed = new LinkedBlockingQueue<>();
+
+    public KeyboardInputSource() {
+        Toolkit.getDefaultToolkit().addAWTEventListener(event -> {
+            KeyEvent key = (KeyEvent) event;
+            if (key.getID() == KeyEvent.KEY_TYPED) {
+                typed.offer(key.getKeyChar());
+            }
+        }, AWTEvent.KEY_EVENT_MASK);
+    }
+
+    public char getNextKey() {
+        while (true) {
+            try {
+                return accept(typed.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean possibleNextInput() {
+        return true;
+    }
+
+    private char accept(char typedKey) {
+        // StdDraw queues the same keys; drop them so its queue does not grow forever.
+        while (StdDraw.hasNextKeyTyped()) {
+            StdDraw.nextKeyTyped();
+        }
+        char c = Character.toUpperCase(typedKey);
+        if (PRINT_TYPED_KEYS) {
+            System.out.print(c);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,120 @@
+package byow.TileEngine;
+
+import java.awt.Color;
+import java.io.PrintStream;
+
+/**
+ * Renders to a terminal with ANSI escape sequences and 24-bit colors, e.g. for playing
+ * over SSH. The first frame (and any frame after invalidate or a grid swap) clears the
+ * screen and writes every tile. Later frames only write the tiles that changed, moving
+ * the cursor only when the next changed tile is not where it already is and setting
+ * colors only when they differ from the last ones written.
+ *
+ * The grid is drawn with its top row on the first line of the terminal. Lines below the
+ * grid are left to the caller, e.g. for a HUD (see moveBelow).
+ */
+public class AnsiRenderer implements TileRenderer {
+    private static final String ESC = "\u001b[";
+
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder();
+    private int height;
+    private TileGrid shownGrid;
+    private TileGrid shown;
+    /* Cursor position and colors as of the end of the last frame, in terminal terms. */
+    private int cursorRow, cursorColumn;
+    private Color text, background;
+
+    public AnsiRenderer(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void initialize(int w, int h) {
+        this.height = h;
+        invalidate();
+    }
+
+    @Override
+    public void invalidate() {
+        shownGrid = null;
+        shown = null;
+    }
+
+    @Override
+    public void renderFrame(TileGrid grid) {
+        if (height == 0) {
+            height = grid.height();
+        }
+        if (grid != shownGrid || shown == null) {
+            buffer.append(ESC).append("0m").append(ESC).append("2J").append(ESC).append("?25l");
+            text = null;
+            background = null;
+            cursorRow = -1;
+            for (int y = grid.height() - 1; y >= 0; y -= 1) {
+                for (int x = 0; x < grid.width(); x += 1) {
+                    put(grid.tile(x, y), x, y);
+                }
+            }
+        } else {
+            for (int change : grid.changesSince(shown)) {
+                int index = change >>> 8;
+                put(Palette.tile((byte) change), index % grid.width(), index / grid.width());
+            }
+        }
+        flush();
+        shownGrid = grid;
+        shown = grid.snapshot();
+    }
+
+    /** Moves the cursor to the start of line LINE below the grid (0 is the first one). */
+    public void moveBelow(int line) {
+        buffer.append(ESC).append("0m");
+        text = null;
+        background = null;
+        moveTo(height + 1 + line, 1);
+        buffer.append(ESC).append('K');
+        flush();
+    }
+
+    /** Shows the cursor and resets colors, e.g. before exiting. */
+    public void close() {
+        buffer.append(ESC).append("0m").append(ESC).append("?25h");
+        flush();
+    }
+
+    private void put(TETile tile, int x, int y) {
+        int row = height - y;
+        int column = x + 1;
+        if (row != cursorRow || column != cursorColumn) {
+            moveTo(row, column);
+        }
+        if (!tile.backgroundColor().equals(background)) {
+            background = tile.backgroundColor();
+            color(48, background);
+        }
+        if (!tile.textColor().equals(text)) {
+            text = tile.textColor();
+            color(38, text);
+        }
+        buffer.append(tile.character());
+        cursorColumn += 1;
+    }
+
+    private void moveTo(int row, int column) {
+        buffer.append(ESC).append(row).append(';').append(column).append('H');
+        cursorRow = row;
+        cursorColumn = column;
+    }
+
+    private void color(int layer, Color c) {
+        buffer.append(ESC).append(layer).append(";2;").append(c.getRed()).append(';')
+                .append(c.getGreen()).append(';').append(c.getBlue()).append('m');
+    }
+
+    private void flush() {
+        out.print(buffer);
+        out.flush();
+        buffer.setLength(0);
+    }
+}
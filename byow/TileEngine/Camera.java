@@ -0,0 +1,57 @@
+package byow.TileEngine;
+
+/**
+ * Window of width x height tiles onto a larger world, used by TERenderer to draw only
+ * the visible part of a grid. Screen tile (x, y) shows world tile
+ * (originX + x, originY + y).
+ */
+public class Camera {
+    private final int width;
+    private final int height;
+    private int originX;
+    private int originY;
+
+    public Camera(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int originX() {
+        return originX;
+    }
+
+    public int originY() {
+        return originY;
+    }
+
+    /**
+     * Centers the view on world tile (X, Y), but keeps it inside a WORLDWIDTH x
+     * WORLDHEIGHT world so that no space beyond the edge is shown.
+     */
+    public void follow(int x, int y, int worldWidth, int worldHeight) {
+        originX = clamp(x - width / 2, worldWidth - width);
+        originY = clamp(y - height / 2, worldHeight - height);
+    }
+
+    /** World x coordinate of screen column SCREENX. */
+    public int worldX(int screenX) {
+        return originX + screenX;
+    }
+
+    /** World y coordinate of screen row SCREENY. */
+    public int worldY(int screenY) {
+        return originY + screenY;
+    }
+
+    private static int clamp(int origin, int max) {
+        return Math.max(0, Math.min(origin, max));
+    }
+}
@@ -0,0 +1,152 @@
+package byow.TileEngine;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Sprite sheet holding every tile look drawn so far, rasterized once at GLYPH_SIZE x
+ * GLYPH_SIZE pixels with the font TERenderer uses. Tiles that look the same (same
+ * character, text color and background color) share a sprite, so colorVariant tiles only
+ * cost a new sprite when they actually differ. Every tile in the Palette is added up
+ * front; anything else is added the first time it is drawn.
+ *
+ * TETile.draw draws the sprite from memory through StdDrawImages instead of filling a
+ * square and laying out the character as text.
+ */
+public class GlyphAtlas {
+    public static final int GLYPH_SIZE = 16;
+    private static final int COLUMNS = 16;
+    private static final Font FONT = new Font("Monaco", Font.BOLD, GLYPH_SIZE - 2);
+    private static GlyphAtlas shared;
+
+    private final IdentityHashMap<TETile, Glyph> byTile = new IdentityHashMap<>();
+    private final HashMap<Look, Glyph> byLook = new HashMap<>();
+    private final List<Glyph> glyphs = new ArrayList<>();
+    private BufferedImage sheet;
+
+    private static class Glyph {
+        final int index;
+        BufferedImage sprite;
+
+        Glyph(int index) {
+            this.index = index;
+        }
+    }
+
+    private static class Look {
+        final char character;
+        final Color text, background;
+
+        Look(TETile tile) {
+            this.character = tile.character();
+            this.text = tile.textColor();
+            this.background = tile.backgroundColor();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Look)) {
+                return false;
+            }
+            Look other = (Look) o;
+            return character == other.character && Objects.equals(text, other.text)
+                    && Objects.equals(background, other.background);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(character, text, background);
+        }
+    }
+
+    /** The atlas shared by every TETile. */
+    public static synchronized GlyphAtlas shared() {
+        if (shared == null) {
+            shared = new GlyphAtlas();
+            for (int id = 0; id < Palette.size(); id++) {
+                shared.glyph(Palette.tile((byte) id));
+            }
+        }
+        return shared;
+    }
+
+    GlyphAtlas() {
+        sheet = new BufferedImage(COLUMNS * GLYPH_SIZE, GLYPH_SIZE, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /** Number of distinct sprites in the sheet. */
+    public synchronized int size() {
+        return glyphs.size();
+    }
+
+    /** The sprite sheet; sprite i is at column i % 16, row i / 16. */
+    public synchronized BufferedImage sheet() {
+        return sheet;
+    }
+
+    /** Returns the GLYPH_SIZE x GLYPH_SIZE sprite of TILE, rasterizing it if needed. */
+    public synchronized BufferedImage sprite(TETile tile) {
+        Glyph glyph = glyph(tile);
+        if (glyph.sprite == null) {
+            glyph.sprite = sheet.getSubimage((glyph.index % COLUMNS) * GLYPH_SIZE,
+                    (glyph.index / COLUMNS) * GLYPH_SIZE, GLYPH_SIZE, GLYPH_SIZE);
+        }
+        return glyph.sprite;
+    }
+
+    private Glyph glyph(TETile tile) {
+        Glyph glyph = byTile.get(tile);
+        if (glyph == null) {
+            Look look = new Look(tile);
+            glyph = byLook.get(look);
+            if (glyph == null) {
+                glyph = new Glyph(glyphs.size());
+                glyphs.add(glyph);
+                byLook.put(look, glyph);
+                rasterize(tile, glyph.index);
+            }
+            byTile.put(tile, glyph);
+        }
+        return glyph;
+    }
+
+    /** Draws TILE into cell INDEX the way TETile.draw draws it with StdDraw. */
+    private void rasterize(TETile tile, int index) {
+        int rows = index / COLUMNS + 1;
+        if (rows * GLYPH_SIZE > sheet.getHeight()) {
+            BufferedImage bigger = new BufferedImage(sheet.getWidth(), 2 * sheet.getHeight(),
+                    BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = bigger.createGraphics();
+            g.drawImage(sheet, 0, 0, null);
+            g.dispose();
+            sheet = bigger;
+            for (Glyph glyph : glyphs) {
+                glyph.sprite = null;
+            }
+        }
+        int left = (index % COLUMNS) * GLYPH_SIZE;
+        int bottom = (index / COLUMNS) * GLYPH_SIZE;
+        Graphics2D g = sheet.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setColor(tile.backgroundColor());
+        g.fillRect(left, bottom, GLYPH_SIZE, GLYPH_SIZE);
+        g.setColor(tile.textColor());
+        g.setFont(FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        String text = Character.toString(tile.character());
+        // Centered like StdDraw.text: half the width to the left, baseline one descent down.
+        g.drawString(text, left + (GLYPH_SIZE - metrics.stringWidth(text)) / 2.0f,
+                bottom + GLYPH_SIZE / 2.0f + metrics.getDescent());
+        g.dispose();
+    }
+}
@@ -0,0 +1,96 @@
+package byow.TileEngine;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the decoded images behind file-backed TETiles, keyed by path.
+ * Paths that cannot be read are cached too, as missing, so a bad path costs one failed
+ * read instead of an exception on every draw. Like StdDraw.picture, a path is looked up
+ * as a file first and then as a class path resource.
+ *
+ * TERenderer.initialize preloads the images of every tile in the Palette, so images are
+ * decoded when a game starts rather than on its first frame.
+ */
+public class ImageCache {
+    public static final int CAPACITY = 256;
+    private static final BufferedImage MISSING = new BufferedImage(1, 1,
+            BufferedImage.TYPE_INT_RGB);
+    private static final ImageCache SHARED = new ImageCache(CAPACITY);
+
+    private final LinkedHashMap<String, BufferedImage> images;
+    private int loads = 0;
+
+    public ImageCache(int capacity) {
+        this.images = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** The cache used by TETile.draw. */
+    public static ImageCache shared() {
+        return SHARED;
+    }
+
+    /** Returns the image at PATH, or null if it cannot be read. */
+    public synchronized BufferedImage get(String path) {
+        BufferedImage image = images.get(path);
+        if (image == null) {
+            image = load(path);
+            images.put(path, image);
+        }
+        return image == MISSING ? null : image;
+    }
+
+    /** Decodes the image of every file-backed tile in TILES that is not cached yet. */
+    public synchronized void preload(Iterable<TETile> tiles) {
+        for (TETile tile : tiles) {
+            if (tile.filepath() != null) {
+                get(tile.filepath());
+            }
+        }
+    }
+
+    /** Decodes the image of every file-backed tile registered in the Palette. */
+    public void preloadPalette() {
+        List<TETile> tiles = new ArrayList<>();
+        for (int id = 0; id < Palette.size(); id++) {
+            tiles.add(Palette.tile((byte) id));
+        }
+        preload(tiles);
+    }
+
+    /** Number of reads attempted so far, including failed ones. */
+    public synchronized int loads() {
+        return loads;
+    }
+
+    private BufferedImage load(String path) {
+        loads += 1;
+        try {
+            File file = new File(path);
+            if (file.isFile()) {
+                BufferedImage image = ImageIO.read(file);
+                return image == null ? MISSING : image;
+            }
+            URL url = ImageCache.class.getResource(path);
+            if (url == null) {
+                url = ImageCache.class.getResource("/" + path);
+            }
+            BufferedImage image = url == null ? null : ImageIO.read(url);
+            return image == null ? MISSING : image;
+        } catch (IOException excp) {
+            return MISSING;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package byow.TileEngine;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Renders into an off-screen BufferedImage, so it works with java.awt.headless=true and
+ * without a window. Each tile is blitted from the GlyphAtlas (or from the ImageCache for
+ * file-backed tiles) at tileSize pixels, so a small tileSize gives a thumbnail.
+ *
+ * Like TERenderer, only tiles that changed since the previous frame are redrawn, unless
+ * the grid instance changed or invalidate was called.
+ *
+ * Ex:
+ *      ImageRenderer r = new ImageRenderer(4);
+ *      r.initialize(grid.width(), grid.height());
+ *      r.renderFrame(grid);
+ *      r.writePng(new File("preview.png"));
+ */
+public class ImageRenderer implements TileRenderer {
+    private final int tileSize;
+    private BufferedImage image;
+    private TileGrid shownGrid;
+    private TileGrid shown;
+
+    public ImageRenderer() {
+        this(GlyphAtlas.GLYPH_SIZE);
+    }
+
+    public ImageRenderer(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tile size must be positive");
+        }
+        this.tileSize = tileSize;
+    }
+
+    @Override
+    public void initialize(int w, int h) {
+        image = new BufferedImage(w * tileSize, h * tileSize, BufferedImage.TYPE_INT_RGB);
+        invalidate();
+    }
+
+    @Override
+    public void invalidate() {
+        shownGrid = null;
+        shown = null;
+    }
+
+    @Override
+    public void renderFrame(TileGrid grid) {
+        if (image == null) {
+            initialize(grid.width(), grid.height());
+        }
+        Graphics2D g = image.createGraphics();
+        if (grid != shownGrid || shown == null) {
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            for (int x = 0; x < grid.width(); x += 1) {
+                for (int y = 0; y < grid.height(); y += 1) {
+                    draw(g, grid.tile(x, y), x, y);
+                }
+            }
+        } else {
+            for (int change : grid.changesSince(shown)) {
+                int index = change >>> 8;
+                draw(g, Palette.tile((byte) change), index % grid.width(), index / grid.width());
+            }
+        }
+        g.dispose();
+        shownGrid = grid;
+        shown = grid.snapshot();
+    }
+
+    /** The image holding the last frame. */
+    public BufferedImage image() {
+        return image;
+    }
+
+    /**
+     * Writes the last frame to FILE as a PNG. Throws IllegalArgumentException in case of
+     * problems.
+     */
+    public void writePng(File file) {
+        try {
+            ImageIO.write(image, "png", file);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    private void draw(Graphics2D g, TETile tile, int x, int y) {
+        BufferedImage sprite = null;
+        if (tile.filepath() != null) {
+            sprite = ImageCache.shared().get(tile.filepath());
+        }
+        if (sprite == null) {
+            sprite = GlyphAtlas.shared().sprite(tile);
+        }
+        // Image rows run top down while tile rows run bottom up.
+        int top = image.getHeight() - (y + 1) * tileSize;
+        g.drawImage(sprite, x * tileSize, top, tileSize, tileSize, null);
+    }
+}
@@ -0,0 +1,105 @@
+package byow.TileEngine;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry mapping TETile objects to small integer ids so that worlds can be stored as
+ * a compact grid of bytes (see TileGrid) instead of an array of object references.
+ *
+ * Every constant in Tileset is registered up front with a fixed id, exposed below under
+ * the same name. Other tiles (e.g. ones made with TETile.colorVariant) are assigned the
+ * next free id the first time they are looked up.
+ *
+ * Each id also has flag bits (PASSABLE, HAZARD_TO_FIRE, ...) saying how players interact
+ * with the tile, so game rules test a bit instead of comparing against a list of tiles.
+ * Tiles registered on the fly are PASSABLE only.
+ *
+ * Ex:
+ *      grid.set(x, y, Palette.FLOOR);
+ *      TETile t = Palette.tile(grid.get(x, y));
+ *      boolean open = (Palette.flags(grid.get(x, y)) & Palette.PASSABLE) != 0;
+ */
+public class Palette {
+    public static final int CAPACITY = 256;
+    private static final TETile[] TILES = new TETile[CAPACITY];
+    private static final int[] FLAGS = new int[CAPACITY];
+    private static final ConcurrentHashMap<TETile, Byte> IDS = new ConcurrentHashMap<>();
+    private static int size = 0;
+
+    /** A player may step onto the tile. */
+    public static final int PASSABLE = 1;
+    /** Stepping onto the tile without armor sends fire guy into an encounter. */
+    public static final int HAZARD_TO_FIRE = 1 << 1;
+    /** Stepping onto the tile without armor sends water lady into an encounter. */
+    public static final int HAZARD_TO_WATER = 1 << 2;
+    /** The tile is picked up by stepping onto it. */
+    public static final int COLLECTIBLE = 1 << 3;
+    /** The tile is a door. */
+    public static final int DOOR = 1 << 4;
+
+    /* NOTHING is registered first so that a freshly allocated grid is all NOTHING. */
+    public static final byte NOTHING = register(Tileset.NOTHING, 0);
+    public static final byte FIRE_GUY = register(Tileset.FIRE_GUY, 0);
+    public static final byte WATER_LADY = register(Tileset.WATER_LADY, 0);
+    public static final byte WALL = register(Tileset.WALL, 0);
+    public static final byte FLOOR = register(Tileset.FLOOR, PASSABLE);
+    public static final byte GRASS = register(Tileset.GRASS, PASSABLE);
+    public static final byte FIRE = register(Tileset.FIRE, PASSABLE | HAZARD_TO_WATER);
+    public static final byte WATER = register(Tileset.WATER, PASSABLE | HAZARD_TO_FIRE);
+    public static final byte FLOWER = register(Tileset.FLOWER, PASSABLE);
+    public static final byte LOCKED_DOOR = register(Tileset.LOCKED_DOOR, PASSABLE | DOOR);
+    public static final byte FIRE_DOOR = register(Tileset.FIRE_DOOR, PASSABLE | DOOR);
+    public static final byte WATER_DOOR = register(Tileset.WATER_DOOR, PASSABLE | DOOR);
+    public static final byte UNLOCKED_DOOR = register(Tileset.UNLOCKED_DOOR, PASSABLE | DOOR);
+    public static final byte SAND = register(Tileset.SAND, PASSABLE);
+    public static final byte MOUNTAIN = register(Tileset.MOUNTAIN, PASSABLE);
+    public static final byte TREE = register(Tileset.TREE, PASSABLE);
+    public static final byte GEM = register(Tileset.GEM, PASSABLE | COLLECTIBLE);
+    public static final byte ARMOR = register(Tileset.ARMOR, PASSABLE | COLLECTIBLE);
+
+    /**
+     * Returns the id of tile t, registering it if it has not been seen before.
+     * Throws IllegalStateException once all CAPACITY ids are in use.
+     */
+    public static byte idOf(TETile t) {
+        Byte id = IDS.get(t);
+        if (id != null) {
+            return id;
+        }
+        return register(t, PASSABLE);
+    }
+
+    /** Returns the tile registered under ID. */
+    public static TETile tile(byte id) {
+        return TILES[id & 0xff];
+    }
+
+    /** Returns the flag bits of the tile registered under ID. */
+    public static int flags(byte id) {
+        return FLAGS[id & 0xff];
+    }
+
+    /** Number of tiles registered so far. Ids run from 0 to size() - 1. */
+    public static synchronized int size() {
+        return size;
+    }
+
+    private static synchronized byte register(TETile t, int flags) {
+        if (t == null) {
+            throw new IllegalArgumentException("cannot register a null tile");
+        }
+        Byte existing = IDS.get(t);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == CAPACITY) {
+            throw new IllegalStateException("palette is full (" + CAPACITY + " tiles)");
+        }
+        byte id = (byte) size;
+        TILES[size] = t;
+        FLAGS[size] = flags;
+        IDS.put(t, id);
+        size += 1;
+        return id;
+    }
+}
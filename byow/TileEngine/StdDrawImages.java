@@ -0,0 +1,103 @@
+package byow.TileEngine;
+
+import edu.princeton.cs.introcs.StdDraw;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Field;
+
+/**
+ * Draws in-memory images on the StdDraw canvas. StdDraw.picture only takes a file name
+ * and builds a new ImageIcon for it on every call, so the images in the ImageCache and
+ * the sprites of the GlyphAtlas are drawn here instead, straight onto StdDraw's
+ * offscreen buffer with the same placement StdDraw.picture uses.
+ *
+ * StdDraw keeps its buffer and scale private, so they are looked up once by reflection
+ * and their types checked. If that fails (e.g. a StdDraw version that renamed them),
+ * or a later draw fails, a warning naming the cause is printed once to System.err,
+ * picture returns false from then on and the caller falls back to StdDraw.
+ */
+final class StdDrawImages {
+    private static final String[] NAMES = {"offscreen", "xmin", "xmax", "ymin", "ymax",
+        "width", "height"};
+    private static final Class<?>[] TYPES = {Graphics2D.class, double.class, double.class,
+        double.class, double.class, int.class, int.class};
+    private static final Field OFFSCREEN, XMIN, XMAX, YMIN, YMAX, WIDTH, HEIGHT;
+    private static volatile boolean disabled;
+
+    static {
+        Field[] fields = new Field[NAMES.length];
+        try {
+            for (int i = 0; i < NAMES.length; i++) {
+                fields[i] = StdDraw.class.getDeclaredField(NAMES[i]);
+                if (fields[i].getType() != TYPES[i]) {
+                    throw new NoSuchFieldException("StdDraw." + NAMES[i] + " is a "
+                            + fields[i].getType().getName() + ", expected "
+                            + TYPES[i].getName());
+                }
+                fields[i].setAccessible(true);
+            }
+        } catch (ReflectiveOperationException | RuntimeException excp) {
+            disable(excp);
+        }
+        OFFSCREEN = fields[0];
+        XMIN = fields[1];
+        XMAX = fields[2];
+        YMIN = fields[3];
+        YMAX = fields[4];
+        WIDTH = fields[5];
+        HEIGHT = fields[6];
+    }
+
+    private StdDrawImages() {
+    }
+
+    /**
+     * Draws IMAGE at its own size in pixels, centered on (x, y), like
+     * StdDraw.picture(x, y, filename). Returns false if nothing could be drawn.
+     */
+    static boolean picture(double x, double y, BufferedImage image) {
+        return draw(x, y, image, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Draws IMAGE centered on (x, y) and scaled to W by H in user coordinates, like
+     * StdDraw.picture(x, y, filename, w, h). Returns false if nothing could be drawn.
+     */
+    static boolean picture(double x, double y, BufferedImage image, double w, double h) {
+        return draw(x, y, image, w, h);
+    }
+
+    /* Draws IMAGE scaled to W by H, or at its own size if they are NaN. */
+    private static boolean draw(double x, double y, BufferedImage image, double w, double h) {
+        if (disabled) {
+            return false;
+        }
+        try {
+            Graphics2D offscreen = (Graphics2D) OFFSCREEN.get(null);
+            double xmin = XMIN.getDouble(null);
+            double ymax = YMAX.getDouble(null);
+            double xScale = WIDTH.getInt(null) / (XMAX.getDouble(null) - xmin);
+            double yScale = HEIGHT.getInt(null) / (ymax - YMIN.getDouble(null));
+            double ws = Double.isNaN(w) ? image.getWidth() : w * xScale;
+            double hs = Double.isNaN(h) ? image.getHeight() : h * yScale;
+            offscreen.drawImage(image, (int) Math.round((x - xmin) * xScale - ws / 2),
+                    (int) Math.round((ymax - y) * yScale - hs / 2),
+                    (int) Math.round(ws), (int) Math.round(hs), null);
+            return true;
+        } catch (IllegalAccessException | RuntimeException excp) {
+            disable(excp);
+            return false;
+        }
+    }
+
+    /* Turns drawing off for good and says why, the first time only. */
+    private static synchronized void disable(Exception cause) {
+        if (disabled) {
+            return;
+        }
+        disabled = true;
+        System.err.println("StdDrawImages: cannot draw on StdDraw's canvas (" + cause
+                + "); tiles are drawn through StdDraw instead, which is slower");
+    }
+}
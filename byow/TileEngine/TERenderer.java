@@ -11,12 +11,16 @@ import java.awt.Font;
  * messing with this renderer, unless you're trying to do something fancy like
  * allowing scrolling of the screen or tracking the avatar or something similar.
  */
-public class TERenderer {
+public class TERenderer implements TileRenderer {
     private static final int TILE_SIZE = 16;
     private int width;
     private int height;
     private int xOffset;
     private int yOffset;
+    /* Snapshot of the grid drawn by the last renderFrame(TileGrid) call and the camera
+       origin it was drawn from. */
+    private TileGrid shown;
+    private int shownX, shownY;
 
     /**
      * Same functionality as the other initialization method. The only difference is that the xOff
@@ -42,6 +46,17 @@ public class TERenderer {
 
         StdDraw.enableDoubleBuffering();
         StdDraw.show();
+        ImageCache.shared().preloadPalette();
+        invalidate();
+    }
+
+    /**
+     * Makes the next renderFrame(TileGrid) redraw every tile. Call this after drawing
+     * over the tiles with anything else, e.g. a menu.
+     */
+    @Override
+    public void invalidate() {
+        shown = null;
     }
 
     /**
@@ -57,6 +72,7 @@ public class TERenderer {
      * @param w width of the window in tiles
      * @param h height of the window in tiles.
      */
+    @Override
     public void initialize(int w, int h) {
         initialize(w, h, 0, 0);
     }
@@ -97,5 +113,63 @@ public class TERenderer {
             }
         }
         StdDraw.show();
+        invalidate();
+    }
+
+    /**
+     * Renders GRID like renderFrame(TETile[][]), but only redraws the tiles that changed
+     * since the previous call. StdDraw's back buffer keeps everything else. The changed
+     * tiles are found with TileGrid.changesSince against a snapshot of the last frame,
+     * so a frame costs O(pages written) rather than O(width * height).
+     *
+     * The whole grid is redrawn on the first call, after initialize or invalidate, and
+     * whenever GRID has a different size than last time. A different grid of the same
+     * size is diffed like any other, so callers may pass a fresh snapshot every frame
+     * (see byow.Core.RenderLoop).
+     * Only a full redraw clears the area outside the grid, where callers draw their HUD.
+     */
+    @Override
+    public void renderFrame(TileGrid grid) {
+        renderFrame(grid, new Camera(grid.width(), grid.height()));
+    }
+
+    /**
+     * Like renderFrame(TileGrid), but only draws the part of GRID that CAMERA sees, so
+     * the cost depends on the size of the view rather than of the world. Moving the
+     * camera redraws the whole view. Returns whether the screen was cleared, in which
+     * case anything drawn around the grid has to be drawn again.
+     */
+    public boolean renderFrame(TileGrid grid, Camera camera) {
+        int viewWidth = Math.min(camera.width(), grid.width());
+        int viewHeight = Math.min(camera.height(), grid.height());
+        int originX = camera.originX();
+        int originY = camera.originY();
+        boolean full = shown == null || shown.width() != grid.width()
+                || shown.height() != grid.height() || originX != shownX || originY != shownY;
+        if (full) {
+            StdDraw.clear(new Color(0, 0, 0));
+            for (int x = 0; x < viewWidth; x += 1) {
+                for (int y = 0; y < viewHeight; y += 1) {
+                    grid.tile(originX + x, originY + y).draw(x + xOffset, y + yOffset);
+                }
+            }
+        } else {
+            for (int change : grid.changesSince(shown)) {
+                int index = change >>> 8;
+                int x = index % grid.width() - originX;
+                int y = index / grid.width() - originY;
+                if (x < 0 || x >= viewWidth || y < 0 || y >= viewHeight) {
+                    continue;
+                }
+                StdDraw.setPenColor(Color.BLACK);
+                StdDraw.filledSquare(x + xOffset + 0.5, y + yOffset + 0.5, 0.5);
+                Palette.tile((byte) change).draw(x + xOffset, y + yOffset);
+            }
+        }
+        StdDraw.show();
+        shown = grid.snapshot();
+        shownX = originX;
+        shownY = originY;
+        return full;
     }
 }
@@ -1,6 +1,7 @@
 package byow.TileEngine;
 
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -73,8 +74,11 @@ public class TETile {
 
     /**
      * Draws the tile to the screen at location x, y. If a valid filepath is provided,
-     * we draw the image located at that filepath to the screen. Otherwise, we fall
-     * back to the character and color representation for the tile.
+     * we draw the image located at that filepath to the screen. The image is decoded once
+     * into the ImageCache and drawn from there rather than read again on every draw.
+     * Otherwise, we draw the tile's pre-rasterized sprite from the GlyphAtlas, falling
+     * back to drawing the character and color representation if StdDrawImages cannot
+     * draw it.
      *
      * Note that the image provided must be of the right size (16x16). It will not be
      * automatically resized or truncated.
@@ -82,14 +86,16 @@ public class TETile {
      * @param y y coordinate
      */
     public void draw(double x, double y) {
-        if (filepath != null) {
-            try {
+        BufferedImage image = filepath == null ? null : ImageCache.shared().get(filepath);
+        if (image != null) {
+            if (!StdDrawImages.picture(x + 0.5, y + 0.5, image)) {
                 StdDraw.picture(x + 0.5, y + 0.5, filepath);
-                return;
-            } catch (IllegalArgumentException e) {
-                // Exception happens because the file can't be found. In this case, fail silently
-                // and just use the character and background color for the tile.
             }
+            return;
+        }
+
+        if (StdDrawImages.picture(x + 0.5, y + 0.5, GlyphAtlas.shared().sprite(this), 1, 1)) {
+            return;
         }
 
         StdDraw.setPenColor(backgroundColor);
@@ -105,6 +111,27 @@ public class TETile {
         return character;
     }
 
+    /** Path of the image drawn for this tile, or null for a character tile.
+     * @return image path
+     */
+    public String filepath() {
+        return filepath;
+    }
+
+    /** Color the character is drawn in.
+     * @return text color
+     */
+    public Color textColor() {
+        return textColor;
+    }
+
+    /** Color drawn behind the character.
+     * @return background color
+     */
+    public Color backgroundColor() {
+        return backgroundColor;
+    }
+
     /**
      * Description of the tile. Useful for displaying mouseover text or
      * testing that two tiles represent the same type of thing.
@@ -0,0 +1,499 @@
+package byow.TileEngine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * A width x height grid of tile ids (see Palette). Position (x, y) uses the same
+ * orientation as a TETile[x][y] world: x grows to the right and y grows upward from the
+ * bottom row.
+ *
+ * The grid is stored as square pages of PAGE_SIZE x PAGE_SIZE ids, reached through a
+ * page table. Pages and page tables are reference counted and copied on write:
+ *  - snapshot() and copy() share the page table and cost O(1).
+ *  - The first write to a grid whose table is shared copies the table, which is just
+ *    one reference per page.
+ *  - A write to a shared page copies that page only.
+ * Untouched pages stay shared no matter how many snapshots exist. fill() points every
+ * entry of a fresh table at a single page, so wiping the grid is cheap too.
+ *
+ * Page and table counts are atomic, so a snapshot may be handed to another thread (e.g.
+ * the render thread, see byow.Core.RenderLoop, or a world restored from the shared
+ * byow.Core.WorldCache) and written or snapshotted there while the owner keeps writing.
+ * A shared page is cloned before its count is dropped, so a writer that sees a count of
+ * one never races a copy of the same page. Counts are conservative: a grid that is
+ * simply dropped never gives its references back, which can cause an unnecessary copy
+ * later but never a shared write.
+ *
+ * A grid can also be generated lazily (see generateLazily): its columns are split into
+ * strips of whole pages, and a strip takes its pages from a StripSource the first time
+ * any of its tiles is read or written. Each snapshot tracks its own strips, so whenever
+ * it generates one it reads the same tiles. A strip that has not been written since it
+ * was generated can be forgotten again (evictStrips).
+ */
+public class TileGrid {
+    public static final int PAGE_BITS = 4;
+    public static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int width;
+    private final int height;
+    private final int pagesWide;
+    private final int pageCount;
+    private Table table;
+    /* Set while the grid is generated lazily; null once it stores every tile. */
+    private Lazy lazy;
+
+    /** Supplies the strips of a lazily generated grid. */
+    public interface StripSource {
+        /**
+         * Returns a grid of the same size whose columns [fromX, toX), one strip, hold
+         * the generated tiles. The caller shares the pages of those columns.
+         */
+        TileGrid strip(int fromX, int toX);
+    }
+
+    private static class Page {
+        final byte[] cells;
+        final AtomicInteger refs;
+
+        Page(byte[] cells, int refs) {
+            this.cells = cells;
+            this.refs = new AtomicInteger(refs);
+        }
+    }
+
+    private static class Table {
+        final Page[] pages;
+        final AtomicInteger refs = new AtomicInteger(1);
+
+        Table(Page[] pages) {
+            this.pages = pages;
+        }
+    }
+
+    /* Strip bookkeeping of a lazy grid. Every snapshot gets its own bit sets. */
+    private static class Lazy {
+        final StripSource source;
+        final int stripPages;
+        /* Page that every strip not generated yet points at. */
+        final Page blank;
+        final long[] pending;
+        final long[] dirty;
+
+        Lazy(StripSource source, int stripPages, Page blank, long[] pending, long[] dirty) {
+            this.source = source;
+            this.stripPages = stripPages;
+            this.blank = blank;
+            this.pending = pending;
+            this.dirty = dirty;
+        }
+
+        Lazy copy() {
+            return new Lazy(source, stripPages, blank, pending.clone(), dirty.clone());
+        }
+
+        boolean isPending(int strip) {
+            return (pending[strip >> 6] & 1L << strip) != 0;
+        }
+    }
+
+    public TileGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pagesWide = (width + PAGE_MASK) >> PAGE_BITS;
+        this.pageCount = pagesWide * ((height + PAGE_MASK) >> PAGE_BITS);
+        this.table = uniformTable((byte) 0);
+    }
+
+    private TileGrid(TileGrid source) {
+        this.width = source.width;
+        this.height = source.height;
+        this.pagesWide = source.pagesWide;
+        this.pageCount = source.pageCount;
+        this.table = source.table;
+        table.refs.incrementAndGet();
+        this.lazy = source.lazy == null ? null : source.lazy.copy();
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public byte get(int x, int y) {
+        int index = pageIndex(x, y);
+        if (lazy != null) {
+            generateStrip(stripOf(x));
+        }
+        return table.pages[index].cells[offset(x, y)];
+    }
+
+    public void set(int x, int y, byte id) {
+        int index = pageIndex(x, y);
+        if (lazy != null) {
+            int strip = stripOf(x);
+            generateStrip(strip);
+            lazy.dirty[strip >> 6] |= 1L << strip;
+        }
+        writablePage(index).cells[offset(x, y)] = id;
+    }
+
+    /** Returns the TETile at (x, y). */
+    public TETile tile(int x, int y) {
+        return Palette.tile(get(x, y));
+    }
+
+    /** Sets every tile to ID without copying any existing page. */
+    public void fill(byte id) {
+        release(table);
+        table = uniformTable(id);
+        lazy = null;
+    }
+
+    /**
+     * Forgets every tile and generates them from SOURCE instead, one strip of
+     * STRIPWIDTH columns at a time, when a tile of the strip is first read or written.
+     * STRIPWIDTH must be a positive multiple of PAGE_SIZE.
+     */
+    public void generateLazily(StripSource source, int stripWidth) {
+        if (stripWidth <= 0 || (stripWidth & PAGE_MASK) != 0) {
+            throw new IllegalArgumentException("strip width must be a positive multiple of "
+                    + PAGE_SIZE + ", got " + stripWidth);
+        }
+        int stripPages = stripWidth >> PAGE_BITS;
+        int strips = (pagesWide + stripPages - 1) / stripPages;
+        long[] pending = new long[(strips + 63) >> 6];
+        for (int strip = 0; strip < strips; strip++) {
+            pending[strip >> 6] |= 1L << strip;
+        }
+        fill(Palette.NOTHING);
+        lazy = new Lazy(source, stripPages, table.pages[0], pending,
+                new long[pending.length]);
+    }
+
+    /** Columns per strip of a lazily generated grid, or 0 if it stores every tile. */
+    public int stripWidth() {
+        return lazy == null ? 0 : lazy.stripPages << PAGE_BITS;
+    }
+
+    /** Number of strips generated so far; 1 for a grid that is not lazy. */
+    public int generatedStrips() {
+        int generated = strips();
+        if (lazy != null) {
+            for (long word : lazy.pending) {
+                generated -= Long.bitCount(word);
+            }
+        }
+        return generated;
+    }
+
+    /** Generates every strip that holds one of the columns [fromX, toX). */
+    public void generateColumns(int fromX, int toX) {
+        if (lazy == null) {
+            return;
+        }
+        int to = Math.min(toX, width);
+        for (int x = Math.max(fromX, 0); x < to; x += PAGE_SIZE) {
+            generateStrip(stripOf(x));
+        }
+    }
+
+    /**
+     * Forgets every generated strip that has not been written since and whose index
+     * KEEP rejects, so that it is generated again the next time it is read. Strip i
+     * holds columns [i * stripWidth(), (i + 1) * stripWidth()).
+     */
+    public void evictStrips(IntPredicate keep) {
+        if (lazy == null) {
+            return;
+        }
+        for (int strip = 0; strip < strips(); strip++) {
+            int word = strip >> 6;
+            long bit = 1L << strip;
+            if ((lazy.pending[word] & bit) != 0 || (lazy.dirty[word] & bit) != 0
+                    || keep.test(strip)) {
+                continue;
+            }
+            ownTable();
+            forEachStripPage(strip, i -> {
+                Page old = table.pages[i];
+                lazy.blank.refs.incrementAndGet();
+                table.pages[i] = lazy.blank;
+                old.refs.decrementAndGet();
+            });
+            lazy.pending[word] |= bit;
+        }
+    }
+
+    /** Overwrites columns [fromX, toX) of this grid with the same columns of SOURCE. */
+    public void copyColumns(TileGrid source, int fromX, int toX) {
+        for (int y = 0; y < height; y++) {
+            for (int x = fromX; x < toX; x++) {
+                set(x, y, source.get(x, y));
+            }
+        }
+    }
+
+    /** Returns an independent grid with the same tiles. O(1); see the class comment. */
+    public TileGrid copy() {
+        return snapshot();
+    }
+
+    /** Returns a copy-on-write snapshot of this grid; see the class comment. */
+    public TileGrid snapshot() {
+        return new TileGrid(this);
+    }
+
+    /**
+     * Gives this grid exclusive ownership of its table and of every page, so that
+     * several threads can write disjoint tiles at once without triggering copies.
+     */
+    public void makeWritable() {
+        generateColumns(0, width);
+        for (int i = 0; i < pageCount; i++) {
+            writablePage(i);
+        }
+    }
+
+    /** Number of pages this grid holds exclusively, i.e. has paid to copy or fill. */
+    public int ownedPages() {
+        if (table.refs.get() > 1) {
+            return 0;
+        }
+        int owned = 0;
+        for (Page page : table.pages) {
+            if (page.refs.get() == 1) {
+                owned += 1;
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * Returns every tile of this grid that differs from EARLIER, a grid of the same size,
+     * packed as (y * width + x) << 8 | id. Only pages that are not shared with EARLIER are
+     * compared, so diffing against a recent snapshot costs O(pages written since). A lazy
+     * grid first generates the strips EARLIER has; strips that neither has generated
+     * count as equal, so both must come from the same StripSource.
+     */
+    public int[] changesSince(TileGrid earlier) {
+        if (earlier.width != width || earlier.height != height) {
+            throw new IllegalArgumentException("cannot diff a " + width + "x" + height
+                    + " grid against a " + earlier.width + "x" + earlier.height + " grid");
+        }
+        if (lazy != null) {
+            for (int strip = 0; strip < strips(); strip++) {
+                if (earlier.lazy == null || !earlier.lazy.isPending(strip)) {
+                    generateStrip(strip);
+                }
+            }
+        }
+        int[] changes = new int[16];
+        int count = 0;
+        for (int i = 0; i < pageCount; i++) {
+            byte[] now = table.pages[i].cells;
+            byte[] then = earlier.table.pages[i].cells;
+            if (now == then) {
+                continue;
+            }
+            int left = (i % pagesWide) << PAGE_BITS;
+            int bottom = (i / pagesWide) << PAGE_BITS;
+            for (int y = bottom; y < Math.min(bottom + PAGE_SIZE, height); y++) {
+                for (int x = left; x < Math.min(left + PAGE_SIZE, width); x++) {
+                    int offset = offset(x, y);
+                    if (now[offset] != then[offset]) {
+                        if (count == changes.length) {
+                            changes = Arrays.copyOf(changes, 2 * count);
+                        }
+                        changes[count++] = (y * width + x) << 8 | (now[offset] & 0xff);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(changes, count);
+    }
+
+    /** Applies CHANGES as returned by changesSince. */
+    public void apply(int[] changes) {
+        apply(changes, 0, changes.length);
+    }
+
+    /** Applies CHANGES[from, to), a range of changes as returned by changesSince. */
+    public void apply(int[] changes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int index = changes[i] >>> 8;
+            set(index % width, index / width, (byte) changes[i]);
+        }
+    }
+
+    /**
+     * Expands the grid into the TETile[x][y] layout expected by TERenderer and by
+     * callers of Engine.interactWithInputString.
+     */
+    public TETile[][] toTETiles() {
+        TETile[][] world = new TETile[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                world[x][y] = Palette.tile(get(x, y));
+            }
+        }
+        return world;
+    }
+
+    /**
+     * Returns the ids of this grid row by row, bottom row first. A lazy grid generates
+     * its missing strips in a snapshot, so it can be read from another thread.
+     */
+    public byte[] toBytes() {
+        if (lazy != null && generatedStrips() < strips()) {
+            TileGrid whole = snapshot();
+            whole.generateColumns(0, width);
+            return whole.toBytes();
+        }
+        byte[] cells = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x += PAGE_SIZE) {
+                Page page = table.pages[(y >> PAGE_BITS) * pagesWide + (x >> PAGE_BITS)];
+                System.arraycopy(page.cells, offset(x, y), cells, y * width + x,
+                        Math.min(PAGE_SIZE, width - x));
+            }
+        }
+        return cells;
+    }
+
+    /** Inverse of toBytes. */
+    public static TileGrid fromBytes(int width, int height, byte[] cells) {
+        if (cells.length != width * height) {
+            throw new IllegalArgumentException("expected " + width * height + " tiles, got "
+                    + cells.length);
+        }
+        TileGrid grid = new TileGrid(width, height);
+        Page[] pages = new Page[grid.pageCount];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new Page(new byte[PAGE_SIZE * PAGE_SIZE], 1);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x += PAGE_SIZE) {
+                Page page = pages[(y >> PAGE_BITS) * grid.pagesWide + (x >> PAGE_BITS)];
+                System.arraycopy(cells, y * width + x, page.cells, offset(x, y),
+                        Math.min(PAGE_SIZE, width - x));
+            }
+        }
+        grid.table = new Table(pages);
+        return grid;
+    }
+
+    /** Builds a grid holding the same tiles as the TETile[x][y] array WORLD. */
+    public static TileGrid fromTETiles(TETile[][] world) {
+        TileGrid grid = new TileGrid(world.length, world[0].length);
+        for (int x = 0; x < grid.width; x++) {
+            for (int y = 0; y < grid.height; y++) {
+                grid.set(x, y, Palette.idOf(world[x][y]));
+            }
+        }
+        return grid;
+    }
+
+    private int pageIndex(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new ArrayIndexOutOfBoundsException("(" + x + ", " + y + ") is outside a "
+                    + width + "x" + height + " grid");
+        }
+        return (y >> PAGE_BITS) * pagesWide + (x >> PAGE_BITS);
+    }
+
+    private static int offset(int x, int y) {
+        return ((y & PAGE_MASK) << PAGE_BITS) | (x & PAGE_MASK);
+    }
+
+    private Page writablePage(int index) {
+        ownTable();
+        Page page = table.pages[index];
+        if (page.refs.get() > 1) {
+            Page copy = new Page(page.cells.clone(), 1);
+            page.refs.decrementAndGet();
+            page = copy;
+            table.pages[index] = page;
+        }
+        return page;
+    }
+
+    /* Gives this grid a table of its own, copying the shared one if needed. */
+    private void ownTable() {
+        if (table.refs.get() > 1) {
+            Page[] pages = table.pages.clone();
+            for (Page page : pages) {
+                page.refs.incrementAndGet();
+            }
+            table.refs.decrementAndGet();
+            table = new Table(pages);
+        }
+    }
+
+    private int strips() {
+        return lazy == null ? 1 : (pagesWide + lazy.stripPages - 1) / lazy.stripPages;
+    }
+
+    private int stripOf(int x) {
+        return (x >> PAGE_BITS) / lazy.stripPages;
+    }
+
+    /* Calls ACTION with the table index of every page of STRIP. */
+    private void forEachStripPage(int strip, IntConsumer action) {
+        int fromColumn = strip * lazy.stripPages;
+        int toColumn = Math.min(fromColumn + lazy.stripPages, pagesWide);
+        for (int row = 0; row < pageCount; row += pagesWide) {
+            for (int column = fromColumn; column < toColumn; column++) {
+                action.accept(row + column);
+            }
+        }
+    }
+
+    /* Takes the pages of STRIP from the source, unless it is generated already. */
+    private void generateStrip(int strip) {
+        if (!lazy.isPending(strip)) {
+            return;
+        }
+        int fromX = strip * lazy.stripPages << PAGE_BITS;
+        TileGrid source = lazy.source.strip(fromX,
+                Math.min(fromX + (lazy.stripPages << PAGE_BITS), width));
+        if (source.width != width || source.height != height) {
+            throw new IllegalArgumentException("strip source made a " + source.width + "x"
+                    + source.height + " grid for a " + width + "x" + height + " grid");
+        }
+        Page[] pages = source.table.pages;
+        ownTable();
+        forEachStripPage(strip, i -> {
+            Page old = table.pages[i];
+            pages[i].refs.incrementAndGet();
+            table.pages[i] = pages[i];
+            old.refs.decrementAndGet();
+        });
+        lazy.pending[strip >> 6] &= ~(1L << strip);
+    }
+
+    private Table uniformTable(byte id) {
+        byte[] cells = new byte[PAGE_SIZE * PAGE_SIZE];
+        if (id != 0) {
+            Arrays.fill(cells, id);
+        }
+        Page page = new Page(cells, pageCount);
+        Page[] pages = new Page[pageCount];
+        Arrays.fill(pages, page);
+        return new Table(pages);
+    }
+
+    private static void release(Table old) {
+        if (old.refs.decrementAndGet() == 0) {
+            for (Page page : old.pages) {
+                page.refs.decrementAndGet();
+            }
+        }
+    }
+}
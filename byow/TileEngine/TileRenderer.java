@@ -0,0 +1,18 @@
+package byow.TileEngine;
+
+/**
+ * Something that can show a TileGrid: the StdDraw window (TERenderer), an off-screen
+ * image (ImageRenderer) or a terminal (AnsiRenderer). Implementations may only redraw
+ * what changed since the previous frame; invalidate forces the next frame to be drawn
+ * in full.
+ */
+public interface TileRenderer {
+    /** Prepares a display W tiles wide and H tiles tall. */
+    void initialize(int w, int h);
+
+    /** Shows GRID, with its bottom left tile at the bottom left of the display. */
+    void renderFrame(TileGrid grid);
+
+    /** Makes the next renderFrame draw every tile. */
+    void invalidate();
+}